@@ -0,0 +1,96 @@
+package com.example.demo;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.StandInIncrementers.Backend;
+import com.zaxxer.hikari.HikariDataSource;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * One of the processes forked by {@link MultiProcessContentionTests}. It builds the incrementer of a strategy against
+ * the shared H2 server, signals that it is ready by creating {@code <result file>.ready}, waits for a line on its
+ * standard input and then runs its threads the way {@link StressRunner} does in measurement mode: every value is
+ * requested in a transaction of its own. The recorders of all threads are written to the result file.
+ *
+ * <p>Arguments: jdbc url, strategy, threads, samples per thread, cache size, result file.
+ */
+public final class ContentionWorker {
+
+	private ContentionWorker() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+		String url = args[0];
+		IncrementStrategy strategy = IncrementStrategy.valueOf(args[1]);
+		int threads = Integer.parseInt(args[2]);
+		int samplesPerThread = Integer.parseInt(args[3]);
+		int cacheSize = Integer.parseInt(args[4]);
+		String resultFile = args[5];
+
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl(url);
+		dataSource.setMaximumPoolSize(threads + 2);
+		DataFieldMaxValueIncrementer shared = StandInIncrementers.create(strategy, Backend.H2, dataSource, cacheSize);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+		Files.createFile(Paths.get(resultFile + ".ready"));
+		new BufferedReader(new InputStreamReader(System.in)).readLine();
+
+		List<StressRecorder> recorders = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int thread = 0; thread < threads; thread++) {
+			StressRecorder recorder = new StressRecorder(samplesPerThread);
+			recorders.add(recorder);
+			new Thread(() -> {
+				try {
+					for (int i = 0; i < samplesPerThread; i++) {
+						long start = System.nanoTime();
+						try {
+							long value = transactionTemplate.execute(status -> {
+								// Mirrors IncrementMeDaoImpl, which builds a new incrementer for every value with this strategy.
+								DataFieldMaxValueIncrementer incrementer = (strategy == IncrementStrategy.DEFAULT_NOT_SHARED
+										? StandInIncrementers.create(strategy, Backend.H2, dataSource, cacheSize) : shared);
+								return incrementer.nextLongValue();
+							});
+							recorder.success(value, System.nanoTime() - start);
+						}
+						catch (Exception ex) {
+							recorder.failure(ex);
+						}
+					}
+				}
+				finally {
+					done.countDown();
+				}
+			}, "contention-" + thread).start();
+		}
+		done.await();
+
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(resultFile))) {
+			out.writeInt(recorders.size());
+			for (StressRecorder recorder : recorders) {
+				recorder.writeTo(out);
+			}
+		}
+		dataSource.close();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,165 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.h2.tools.Server;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Runs every strategy from 1 to 16 processes against one H2 TCP server in SQL Server mode, which stands in for the
+ * shared SQL Server instance. Each process is a {@link ContentionWorker} in a JVM of its own. The workers are released
+ * at the same time and the recorders of all their threads are combined into one {@link StressReport} per strategy and
+ * process count, named like {@code PASSIVE_REAPER-4p}, that is written to {@code target/contention-reports}.
+ *
+ * <p>Every run must serve unique values across all of its processes. The databases use the page store with table
+ * locks: the MVStore of H2 1.4.197 can lose one of two concurrent conditional updates of the same row, which SQL Server
+ * never does, and the multi-threaded mode keeps a worker that waits in a stand-in procedure from blocking the others.
+ * H2 neither escalates locks nor takes page locks the way SQL Server does, so the deadlock and lock timeout counts of
+ * the reports show how a strategy behaves under contention, not the exact numbers SQL Server would show. The stand-in
+ * procedures run in this JVM, next to the server, so an application lock taken by one worker is seen by all of them.
+ *
+ * <p>Run with {@code mvn -Pcontention test}. The system properties "contention.processes", "contention.strategies",
+ * "contention.threads", "contention.samples" and "contention.cacheSize" narrow or widen the runs.
+ */
+public class MultiProcessContentionTests {
+
+	private static final Path REPORT_DIRECTORY = Paths.get("target", "contention-reports");
+
+	private static Server server;
+
+	private static int databaseCount;
+
+	private final int threads = Integer.getInteger("contention.threads", 4);
+
+	private final int samples = Integer.getInteger("contention.samples", 500);
+
+	private final int cacheSize = Integer.getInteger("contention.cacheSize", 100);
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-tcpDaemon").start();
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void everyStrategyServesUniqueValuesAcrossProcesses() throws Exception {
+		List<StressReport> reports = new ArrayList<>();
+		for (IncrementStrategy strategy : strategies()) {
+			for (int processes : processCounts()) {
+				StressReport report = run(strategy, processes);
+				report.write(REPORT_DIRECTORY);
+				System.out.println(report);
+				reports.add(report);
+			}
+		}
+		for (StressReport report : reports) {
+			assertThat(report.getDuplicates()).as("duplicates of %s", report).isZero();
+		}
+	}
+
+	private StressReport run(IncrementStrategy strategy, int processes) throws Exception {
+		String url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:contention" + (databaseCount++)
+				+ ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1;MV_STORE=FALSE;MULTI_THREADED=TRUE";
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(url);
+		StandInIncrementers.createH2Schema(dataSource);
+
+		Path workDirectory = Files.createDirectories(Paths.get("target", "contention", strategy + "-" + processes + "p"));
+		List<Process> workers = new ArrayList<>();
+		List<Path> resultFiles = new ArrayList<>();
+		try {
+			for (int i = 0; i < processes; i++) {
+				Path resultFile = workDirectory.resolve("worker-" + i + ".bin");
+				Files.deleteIfExists(resultFile);
+				Files.deleteIfExists(Paths.get(resultFile + ".ready"));
+				resultFiles.add(resultFile);
+				workers.add(new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+						"-cp", System.getProperty("java.class.path"), ContentionWorker.class.getName(), url, strategy.name(),
+						String.valueOf(this.threads), String.valueOf(this.samples), String.valueOf(this.cacheSize),
+						resultFile.toString())
+					.redirectErrorStream(true)
+					.redirectOutput(workDirectory.resolve("worker-" + i + ".log").toFile())
+					.start());
+			}
+			awaitReady(resultFiles, workers);
+
+			long start = System.nanoTime();
+			for (Process worker : workers) {
+				OutputStream go = worker.getOutputStream();
+				go.write("GO\n".getBytes(StandardCharsets.UTF_8));
+				go.flush();
+			}
+			for (Process worker : workers) {
+				assertThat(worker.waitFor(5, TimeUnit.MINUTES)).as("%s worker finished", strategy).isTrue();
+				assertThat(worker.exitValue()).as("%s worker exit value, see %s", strategy, workDirectory).isZero();
+			}
+			long elapsedNanos = System.nanoTime() - start;
+
+			List<StressRecorder> recorders = new ArrayList<>();
+			for (Path resultFile : resultFiles) {
+				try (DataInputStream in = new DataInputStream(Files.newInputStream(resultFile))) {
+					for (int count = in.readInt(); count > 0; count--) {
+						recorders.add(StressRecorder.readFrom(in));
+					}
+				}
+			}
+			return new StressReport(strategy + "-" + processes + "p", LoadMode.CLOSED_LOOP, 0, recorders, elapsedNanos);
+		}
+		finally {
+			workers.forEach(Process::destroyForcibly);
+		}
+	}
+
+	private static void awaitReady(List<Path> resultFiles, List<Process> workers) throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+		for (int i = 0; i < resultFiles.size(); i++) {
+			File ready = new File(resultFiles.get(i) + ".ready");
+			while (!ready.exists()) {
+				if (!workers.get(i).isAlive() || System.nanoTime() > deadline) {
+					throw new IOException("Worker " + i + " did not start, see " + resultFiles.get(i).getParent());
+				}
+				Thread.sleep(20);
+			}
+		}
+	}
+
+	private static List<IncrementStrategy> strategies() {
+		String strategies = System.getProperty("contention.strategies", "");
+		if (strategies.trim().isEmpty()) {
+			return Arrays.asList(IncrementStrategy.values());
+		}
+		return Arrays.stream(strategies.split(",")).map(String::trim).map(IncrementStrategy::valueOf).collect(Collectors.toList());
+	}
+
+	private static List<Integer> processCounts() {
+		return Arrays.stream(System.getProperty("contention.processes", "1,2,4,8,16").split(","))
+			.map(String::trim)
+			.map(Integer::valueOf)
+			.collect(Collectors.toList());
+	}
+}
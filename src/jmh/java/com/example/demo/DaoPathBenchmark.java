@@ -0,0 +1,105 @@
+package com.example.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares the cost per value of the transactional {@link IncrementMeDaoImpl}, called through the same transaction
+ * interceptor the application context puts in front of it, with the {@link FastPathIncrementMeDao} in front of it.
+ *
+ * <p>The DAO runs on the {@link InMemoryJdbcStub}, so the difference is the cost of the interceptor and the
+ * transaction. Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="DaoPathBenchmark"}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoPathBenchmark {
+
+	@Param({ "PASSIVE_REAPER", "SEQUENCE_RANGE", "HI_LO", "SEQUENCE", "SNOWFLAKE" })
+	public IncrementStrategy strategy;
+
+	@Param({ "1000" })
+	public int cacheSize;
+
+	@Param({ "false", "true" })
+	public boolean fastPath;
+
+	private ThreadPoolTaskExecutor executor;
+
+	private ThreadPoolTaskScheduler scheduler;
+
+	private IncrementMeDaoImpl transactionalDao;
+
+	private IncrementMeDao dao;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// Outside of Spring Boot logback logs every transaction at DEBUG, which would dwarf the cost being measured.
+		((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.INFO);
+		DataSource dataSource = InMemoryJdbcStub.dataSource();
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		executor = new ThreadPoolTaskExecutor();
+		executor.initialize();
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		IncrementMeDaoImpl target = new IncrementMeDaoImpl(dataSource, transactionManager, executor, scheduler,
+				new SimpleMeterRegistry(), new DataSourceProperties());
+		target.setIncrementStrategy(strategy);
+		target.setCacheSize(cacheSize);
+
+		ProxyFactory proxyFactory = new ProxyFactory(target);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+		transactionalDao = (IncrementMeDaoImpl) proxyFactory.getProxy();
+		dao = (fastPath ? new FastPathIncrementMeDao(transactionalDao) : transactionalDao);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		transactionalDao.discardCachedValues();
+		scheduler.shutdown();
+		executor.shutdown();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long oneThread() {
+		return dao.getNextLongValue();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public long sixteenThreads() {
+		return dao.getNextLongValue();
+	}
+}
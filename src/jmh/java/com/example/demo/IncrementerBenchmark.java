@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+import com.example.demo.StandInIncrementers.Backend;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Measures throughput and latency of {@code nextLongValue()} for every {@link IncrementStrategy}, with a range of
+ * cache sizes and thread counts.
+ *
+ * <p>The {@code H2} backend runs against an embedded H2 database in SQL Server mode and includes the cost of the
+ * database. The {@code IN_MEMORY_STUB} backend answers every statement from memory, so it isolates the Java-side
+ * overhead of each incrementer (locking, caching, JDBC plumbing).
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec}, JMH options can be passed with
+ * {@code -Djmh.args="..."}, for example {@code -Djmh.args="-p strategy=HI_LO -p backend=IN_MEMORY_STUB"}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncrementerBenchmark {
+
+	/** Every strategy when no values are given. */
+	@Param
+	public IncrementStrategy strategy;
+
+	@Param({ "1", "100", "1000" })
+	public int cacheSize;
+
+	@Param
+	public Backend backend;
+
+	/** The stripe size of the block caching strategies, pass {@code -p stripeSize=0,64} to compare unordered mode. */
+	@Param({ "0" })
+	public int stripeSize;
+
+	private DataSource dataSource;
+
+	private DataFieldMaxValueIncrementer incrementer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		if (backend == Backend.H2) {
+			HikariDataSource hikari = new HikariDataSource();
+			hikari.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+			hikari.setMaximumPoolSize(32);
+			dataSource = hikari;
+			StandInIncrementers.createH2Schema(dataSource);
+		}
+		else {
+			dataSource = InMemoryJdbcStub.dataSource();
+		}
+		incrementer = StandInIncrementers.create(strategy, backend, dataSource, cacheSize);
+		if (incrementer instanceof BlockCachingIncrementer) {
+			((BlockCachingIncrementer) incrementer).getValueCache().setStripeSize(stripeSize);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (dataSource instanceof HikariDataSource) {
+			((HikariDataSource) dataSource).close();
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long oneThread() {
+		return nextValue();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long fourThreads() {
+		return nextValue();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public long sixteenThreads() {
+		return nextValue();
+	}
+
+	/** As many threads as the stress test executor of the application. */
+	@Benchmark
+	@Threads(80)
+	public long eightyThreads() {
+		return nextValue();
+	}
+
+	private long nextValue() {
+		if (strategy == IncrementStrategy.DEFAULT_NOT_SHARED) {
+			// Mirrors IncrementMeDaoImpl, which builds a new incrementer for every value with this strategy.
+			return StandInIncrementers.create(strategy, backend, dataSource, cacheSize).nextLongValue();
+		}
+		return incrementer.nextLongValue();
+	}
+}
@@ -0,0 +1,231 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.incrementer.AbstractColumnMaxValueIncrementer;
+
+/**
+ * Base class for the SQL Server incrementers that generate values by inserting rows into a sequence table with a
+ * single identity column. Subclasses decide what to do with the rows once a block of values has been reserved.
+ *
+ * <p>A block of "cacheSize" values is reserved each time the cache runs out, using the configured
+ * {@link IdentityRefillMode}. The default, {@link IdentityRefillMode#SET_BASED}, reserves the whole block with one
+ * statement, so the refill cost does not grow with the cache size. Values are served from the block through an
+ * {@link IdBlockCache}, so callers only contend with each other when the block has to be refilled.
+ *
+ * <p>By default a block is reserved on the connection of the caller's transaction, so the inserted rows stay locked
+ * until that transaction ends. If a refill DataSource is set, blocks are reserved on a connection of their own from
+ * that DataSource, outside of any transaction, and committed right away. The locks on the sequence table then last
+ * only as long as the refill statement.
+ *
+ * @author Tyler Van Gorder
+ */
+public abstract class AbstractSqlServerTableMaxValueIncrementer extends AbstractColumnMaxValueIncrementer implements BlockCachingIncrementer {
+
+	/** The current cache of values */
+	private final IdBlockCache valueCache = new IdBlockCache(this::reserveBlock, this::getCacheSize);
+
+	private IdentityRefillMode refillMode = IdentityRefillMode.SET_BASED;
+
+	private DataSource refillDataSource;
+
+	/**
+	 * Default constructor for bean property style usage.
+	 * @see #setDataSource
+	 * @see #setIncrementerName
+	 * @see #setColumnName
+	 */
+	public AbstractSqlServerTableMaxValueIncrementer() {
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param dataSource the DataSource to use
+	 * @param incrementerName the name of the sequence/table to use
+	 * @param columnName the name of the column in the sequence table to use
+	 */
+	public AbstractSqlServerTableMaxValueIncrementer(DataSource dataSource, String incrementerName, String columnName) {
+		super(dataSource, incrementerName, columnName);
+	}
+
+	/**
+	 * Set how new blocks of values are reserved, defaults to {@link IdentityRefillMode#SET_BASED}.
+	 */
+	public void setRefillMode(IdentityRefillMode refillMode) {
+		this.refillMode = refillMode;
+	}
+
+	public IdentityRefillMode getRefillMode() {
+		return this.refillMode;
+	}
+
+	/**
+	 * Set the DataSource that blocks are reserved from, outside of the caller's transaction. Typically a small pool
+	 * of its own, so that callers holding a connection in a transaction can never exhaust it. By default blocks are
+	 * reserved within the caller's transaction.
+	 */
+	public void setRefillDataSource(DataSource refillDataSource) {
+		this.refillDataSource = refillDataSource;
+		this.valueCache.setRefillOutsideTransaction(refillDataSource != null);
+	}
+
+	/**
+	 * Return whether blocks are reserved and committed outside of the caller's transaction.
+	 */
+	protected boolean isRefillOutsideTransaction() {
+		return (this.refillDataSource != null);
+	}
+
+	@Override
+	public IdBlockCache getValueCache() {
+		return this.valueCache;
+	}
+
+	@Override
+	protected long getNextKey() throws DataAccessException {
+		return this.valueCache.next();
+	}
+
+	private IdBlock reserveBlock(int size) {
+		if (this.refillDataSource != null) {
+			return reserveBlockOutsideTransaction(size);
+		}
+		/*
+		* Need to use straight JDBC code because we need to make sure that the insert and select
+		* are performed on the same connection (otherwise we can't be sure that @@identity
+		* returns the correct value)
+		*/
+		Connection con = DataSourceUtils.getConnection(getDataSource());
+		Statement stmt = null;
+		try {
+			stmt = con.createStatement();
+			DataSourceUtils.applyTransactionTimeout(stmt, getDataSource());
+			long[] values = reserveValues(stmt, size);
+			valuesReserved(stmt, values);
+			return IdBlock.of(values);
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not increment identity", ex);
+		}
+		finally {
+			JdbcUtils.closeStatement(stmt);
+			DataSourceUtils.releaseConnection(con, getDataSource());
+		}
+	}
+
+	private IdBlock reserveBlockOutsideTransaction(int size) {
+		// Not through DataSourceUtils, which would hand out the connection bound to the caller's transaction.
+		Connection con = null;
+		Statement stmt = null;
+		try {
+			con = this.refillDataSource.getConnection();
+			boolean autoCommit = con.getAutoCommit();
+			stmt = con.createStatement();
+			try {
+				long[] values = reserveValues(stmt, size);
+				valuesReserved(stmt, values);
+				if (!autoCommit) {
+					con.commit();
+				}
+				return IdBlock.of(values);
+			}
+			catch (SQLException | RuntimeException ex) {
+				if (!autoCommit) {
+					con.rollback();
+				}
+				throw ex;
+			}
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not increment identity", ex);
+		}
+		finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(con);
+		}
+	}
+
+	/**
+	 * Callback invoked after a new block of values has been reserved, on the same statement that reserved it.
+	 * Refills are serialized, so implementations do not need to guard their own state. The block is served from the
+	 * array once this method returns, so implementations may map the values in place, keeping them in ascending order.
+	 * @param stmt the statement used to reserve the values
+	 * @param values the reserved values, in ascending order
+	 */
+	protected void valuesReserved(Statement stmt, long[] values) throws SQLException {
+	}
+
+	/**
+	 * Reserve {@code count} new values from the sequence table using the configured refill mode.
+	 * @return the reserved values, in ascending order
+	 */
+	protected long[] reserveValues(Statement stmt, int count) throws SQLException {
+		long[] values = new long[count];
+		if (this.refillMode == IdentityRefillMode.SET_BASED) {
+			ResultSet rs = stmt.executeQuery(getBlockIncrementStatement(count));
+			try {
+				int index = 0;
+				while (rs.next()) {
+					if (index == count) {
+						throw new DataAccessResourceFailureException("Block increment statement returned more than " + count + " values");
+					}
+					values[index++] = rs.getLong(1);
+				}
+				if (index != count) {
+					throw new DataAccessResourceFailureException("Block increment statement returned " + index + " of " + count + " values");
+				}
+			}
+			finally {
+				JdbcUtils.closeResultSet(rs);
+			}
+			// The order of the rows returned by an OUTPUT clause is not guaranteed.
+			Arrays.sort(values);
+		}
+		else {
+			for (int i = 0; i < count; i++) {
+				stmt.executeUpdate(getIncrementStatement());
+				ResultSet rs = stmt.executeQuery(getIdentityStatement());
+				try {
+					if (!rs.next()) {
+						throw new DataAccessResourceFailureException("Identity statement failed after inserting");
+					}
+					values[i] = rs.getLong(1);
+				}
+				finally {
+					JdbcUtils.closeResultSet(rs);
+				}
+			}
+		}
+		return values;
+	}
+
+	protected String getIncrementStatement() {
+		return "insert into " + getIncrementerName() + " default values";
+	}
+
+	protected String getIdentityStatement() {
+		return "select @@identity";
+	}
+
+	/**
+	 * Return a single statement that inserts {@code count} rows into the sequence table and returns the generated
+	 * values. An {@code INSERT} cannot insert more than one row of default values, so a {@code MERGE} that never
+	 * matches is used to insert one row of default values per source row.
+	 */
+	protected String getBlockIncrementStatement(int count) {
+		return "merge into " + getIncrementerName()
+				+ " using (select top (" + count + ") 1 as n from sys.all_columns a cross join sys.all_columns b) as source"
+				+ " on 1 = 0 when not matched then insert default values"
+				+ " output inserted." + getColumnName() + ";";
+	}
+}
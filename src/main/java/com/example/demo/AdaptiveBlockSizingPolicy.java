@@ -0,0 +1,55 @@
+package com.example.demo;
+
+import java.time.Duration;
+
+/**
+ * A {@link BlockSizingPolicy} that sizes blocks to the rate at which values are consumed.
+ *
+ * <p>The block size doubles when a refill happens in less than half the target refill interval and halves when a
+ * block lasts longer than twice the target interval, always staying between the minimum and maximum sizes. A busy
+ * process therefore ends up with large blocks and few round trips, while an idle process keeps small blocks and
+ * wastes few values when it stops.
+ *
+ * <p>Instances hold the current size and must not be shared between caches.
+ *
+ * @author Tyler Van Gorder
+ */
+public class AdaptiveBlockSizingPolicy implements BlockSizingPolicy {
+
+	private final int minBlockSize;
+	private final int maxBlockSize;
+	private final long targetRefillIntervalNanos;
+
+	private int blockSize;
+
+	/**
+	 * @param minBlockSize the smallest block to reserve, also used for the first block
+	 * @param maxBlockSize the largest block to reserve
+	 * @param targetRefillInterval the desired time between two refills
+	 */
+	public AdaptiveBlockSizingPolicy(int minBlockSize, int maxBlockSize, Duration targetRefillInterval) {
+		if (minBlockSize < 1 || maxBlockSize < minBlockSize) {
+			throw new IllegalArgumentException("Block sizes must satisfy 1 <= minBlockSize <= maxBlockSize");
+		}
+		if (targetRefillInterval.isZero() || targetRefillInterval.isNegative()) {
+			throw new IllegalArgumentException("Property 'targetRefillInterval' must be positive");
+		}
+		this.minBlockSize = minBlockSize;
+		this.maxBlockSize = maxBlockSize;
+		this.targetRefillIntervalNanos = targetRefillInterval.toNanos();
+		this.blockSize = minBlockSize;
+	}
+
+	@Override
+	public synchronized int nextBlockSize(long nanosSinceLastRefill) {
+		if (nanosSinceLastRefill >= 0) {
+			if (nanosSinceLastRefill < this.targetRefillIntervalNanos / 2) {
+				this.blockSize = (int) Math.min((long) this.blockSize * 2, this.maxBlockSize);
+			}
+			else if (nanosSinceLastRefill > this.targetRefillIntervalNanos * 2) {
+				this.blockSize = Math.max(this.blockSize / 2, this.minBlockSize);
+			}
+		}
+		return this.blockSize;
+	}
+}
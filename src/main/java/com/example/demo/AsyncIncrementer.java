@@ -0,0 +1,24 @@
+package com.example.demo;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link DataFieldMaxValueIncrementer} that can hand out values without blocking the caller while new values are
+ * reserved from the database. Requests made while a reservation is in flight are served by that same round trip.
+ *
+ * @author Tyler Van Gorder
+ */
+public interface AsyncIncrementer extends DataFieldMaxValueIncrementer {
+
+	/**
+	 * Return a future of the next value.
+	 */
+	CompletableFuture<Long> nextValueAsync();
+
+	/**
+	 * Return a future of the next {@code count} values.
+	 */
+	CompletableFuture<long[]> nextValuesAsync(int count);
+}
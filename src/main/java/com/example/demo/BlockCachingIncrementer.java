@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link DataFieldMaxValueIncrementer} that serves its values from an {@link IdBlockCache}, which can be used to
+ * tune how blocks are refilled and to inspect the refill statistics.
+ *
+ * @author Tyler Van Gorder
+ */
+public interface BlockCachingIncrementer extends BulkIncrementer, AsyncIncrementer {
+
+	/**
+	 * Return the cache the values of this incrementer are served from.
+	 */
+	IdBlockCache getValueCache();
+
+	@Override
+	default void nextLongValues(long[] target, int offset, int length) {
+		getValueCache().fill(target, offset, length);
+	}
+
+	@Override
+	default void nextLongValues(LongBuffer target) {
+		getValueCache().fill(target);
+	}
+
+	@Override
+	default CompletableFuture<Long> nextValueAsync() {
+		return getValueCache().nextAsync();
+	}
+
+	@Override
+	default CompletableFuture<long[]> nextValuesAsync(int count) {
+		return getValueCache().nextAsync(count);
+	}
+}
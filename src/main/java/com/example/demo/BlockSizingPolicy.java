@@ -0,0 +1,16 @@
+package com.example.demo;
+
+/**
+ * Decides how many values an {@link IdBlockCache} reserves with its next refill.
+ *
+ * @author Tyler Van Gorder
+ * @see AdaptiveBlockSizingPolicy
+ */
+public interface BlockSizingPolicy {
+
+	/**
+	 * Return the size of the next block.
+	 * @param nanosSinceLastRefill the time since the previous block was reserved, or -1 for the first block
+	 */
+	int nextBlockSize(long nanosSinceLastRefill);
+}
@@ -0,0 +1,33 @@
+package com.example.demo;
+
+import java.nio.LongBuffer;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link DataFieldMaxValueIncrementer} that can hand out many values in one call, for callers such as batch writers
+ * that need thousands of keys at a time.
+ *
+ * @author Tyler Van Gorder
+ */
+public interface BulkIncrementer extends DataFieldMaxValueIncrementer {
+
+	/**
+	 * Return the next {@code count} values.
+	 */
+	default long[] nextLongValues(int count) {
+		long[] values = new long[count];
+		nextLongValues(values, 0, count);
+		return values;
+	}
+
+	/**
+	 * Fill {@code length} elements of the target array, starting at {@code offset}, with the next values.
+	 */
+	void nextLongValues(long[] target, int offset, int length);
+
+	/**
+	 * Fill the remaining elements of the target buffer with the next values.
+	 */
+	void nextLongValues(LongBuffer target);
+}
@@ -5,7 +5,10 @@ import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.jdbc.AbstractDataSourceInitializer;
 import org.springframework.boot.jdbc.DataSourceInitializationMode;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 
 public class ExampleDatabaseInitializer extends AbstractDataSourceInitializer {
 
@@ -13,10 +16,36 @@ public class ExampleDatabaseInitializer extends AbstractDataSourceInitializer {
 	@Value("${example.create-database:true}")
 	private boolean createDatabase = true;
 
+	@Value("${example.incrementStrategy:DEFAULT_NOT_SHARED}")
+	private IncrementStrategy incrementStrategy = IncrementStrategy.DEFAULT_NOT_SHARED;
+
+	@Value("${example.shard-count:4}")
+	private int shardCount = 4;
+
+	private final DataSource dataSource;
+
 	private static final String SCHEMA_SCRIPT_LOCATION = "classpath:com/example/demo/example-@@platform@@.sql";
 
 	public ExampleDatabaseInitializer(DataSource dataSource, ResourceLoader resourceLoader) {
 		super(dataSource, resourceLoader);
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	protected void initialize() {
+		super.initialize();
+		if (getMode() == DataSourceInitializationMode.NEVER || incrementStrategy != IncrementStrategy.SHARDED) {
+			return;
+		}
+		// One sequence table per shard, as many as the SHARDED strategy is configured to use.
+		StringBuilder script = new StringBuilder();
+		for (int shard = 0; shard < shardCount; shard++) {
+			script.append("CREATE TABLE ").append(ShardedSqlServerMaxValueIncrementer.tableName("EXAMPLE_SEQ", shard)).append(" (ID BIGINT IDENTITY);\n");
+		}
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ByteArrayResource(script.toString().getBytes()));
+		// Like the schema script, tables that already exist are left alone.
+		populator.setContinueOnError(true);
+		DatabasePopulatorUtils.execute(populator, dataSource);
 	}
 
 	@Override
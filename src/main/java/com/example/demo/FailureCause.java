@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+/**
+ * Classifies the failures of an incrementer call by their root cause, using the SQL Server error codes where
+ * possible and the standard SQL states otherwise.
+ *
+ * @author Tyler Van Gorder
+ */
+public enum FailureCause {
+
+	/** SQL Server chose the transaction as the victim of a deadlock (error 1205). */
+	DEADLOCK_VICTIM,
+
+	/** A lock request exceeded the lock timeout (error 1222). */
+	LOCK_TIMEOUT,
+
+	/** The statement or transaction timed out. */
+	QUERY_TIMEOUT,
+
+	/** A connection could not be obtained. */
+	CONNECTION_FAILURE,
+
+	/** Any other failure. */
+	OTHER;
+
+	/**
+	 * Return the cause of the given failure.
+	 */
+	public static FailureCause of(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				int errorCode = ((SQLException) cause).getErrorCode();
+				String sqlState = ((SQLException) cause).getSQLState();
+				// The SQL states cover the H2 stand-in of the multi-process suite, which has its own error codes.
+				if (errorCode == 1205 || "40001".equals(sqlState)) {
+					return DEADLOCK_VICTIM;
+				}
+				if (errorCode == 1222 || "HYT00".equals(sqlState)) {
+					return LOCK_TIMEOUT;
+				}
+			}
+			if (cause instanceof SQLTimeoutException || cause instanceof QueryTimeoutException) {
+				return QUERY_TIMEOUT;
+			}
+			if (cause instanceof CannotGetJdbcConnectionException) {
+				return CONNECTION_FAILURE;
+			}
+		}
+		return OTHER;
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.demo;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * An {@link IncrementMeDao} in front of the transactional {@link IncrementMeDaoImpl} that serves single values
+ * without going through its transaction interceptor whenever no transaction is needed:
+ *
+ * <ul>
+ * <li>With a block caching strategy, values left in the current block are taken straight from the
+ * {@link IdBlockCache}. Only a request that finds the block exhausted goes through the transactional DAO, which
+ * reserves the next block in a transaction the same way it always did.
+ * <li>SEQUENCE and SNOWFLAKE values are never rolled back, so they are requested without a transaction.
+ * <li>The two default strategies always go through the transactional DAO, they need the transaction to show the
+ * deadlock.
+ * </ul>
+ *
+ * A cached value then costs a compare-and-set instead of a proxy call, a transaction attribute lookup and a check for
+ * an existing transaction. The bulk and asynchronous methods are passed on as they are, they already pay for the
+ * interceptor once per request rather than once per value.
+ *
+ * @author Tyler Van Gorder
+ */
+public class FastPathIncrementMeDao implements IncrementMeDao {
+
+	private final IncrementMeDaoImpl transactionalDao;
+
+	private volatile IdBlockCache valueCache;
+
+	private volatile DataFieldMaxValueIncrementer directIncrementer;
+
+	private volatile boolean resolved;
+
+	/**
+	 * @param transactionalDao the transactional DAO (typically its proxy), which builds the incrementer and reserves
+	 * the blocks
+	 */
+	public FastPathIncrementMeDao(IncrementMeDaoImpl transactionalDao) {
+		this.transactionalDao = transactionalDao;
+	}
+
+	@Override
+	public int getNextValue() {
+		resolve();
+		if (this.directIncrementer instanceof SnowflakeMaxValueIncrementer) {
+			throw IncrementMeDaoImpl.intValuesNotSupported(IncrementStrategy.SNOWFLAKE);
+		}
+		IdBlockCache cache = this.valueCache;
+		if (cache != null) {
+			long value = cache.nextIfCached();
+			if (value != IdBlockCache.NO_CACHED_VALUE) {
+				return (int) value;
+			}
+		}
+		DataFieldMaxValueIncrementer incrementer = this.directIncrementer;
+		return (incrementer != null ? incrementer.nextIntValue() : this.transactionalDao.getNextValue());
+	}
+
+	@Override
+	public long getNextLongValue() {
+		resolve();
+		IdBlockCache cache = this.valueCache;
+		if (cache != null) {
+			long value = cache.nextIfCached();
+			if (value != IdBlockCache.NO_CACHED_VALUE) {
+				return value;
+			}
+		}
+		DataFieldMaxValueIncrementer incrementer = this.directIncrementer;
+		return (incrementer != null ? incrementer.nextLongValue() : this.transactionalDao.getNextLongValue());
+	}
+
+	// The incrementer is built on first use, like the DAO does, and never replaced afterwards.
+	private void resolve() {
+		if (this.resolved) {
+			return;
+		}
+		synchronized (this) {
+			if (!this.resolved) {
+				IncrementStrategy strategy = this.transactionalDao.getIncrementStrategy();
+				DataFieldMaxValueIncrementer incrementer = this.transactionalDao.getSharedIncrementer();
+				if (incrementer instanceof BlockCachingIncrementer) {
+					this.valueCache = ((BlockCachingIncrementer) incrementer).getValueCache();
+				}
+				else if (strategy == IncrementStrategy.SEQUENCE || strategy == IncrementStrategy.SNOWFLAKE) {
+					this.directIncrementer = incrementer;
+				}
+				this.resolved = true;
+			}
+		}
+	}
+
+	@Override
+	public long[] getNextValues(int count) {
+		return this.transactionalDao.getNextValues(count);
+	}
+
+	@Override
+	public void getNextValues(long[] target, int offset, int length) {
+		this.transactionalDao.getNextValues(target, offset, length);
+	}
+
+	@Override
+	public void getNextValues(LongBuffer target) {
+		this.transactionalDao.getNextValues(target);
+	}
+
+	@Override
+	public CompletableFuture<Long> getNextValueAsync() {
+		return this.transactionalDao.getNextValueAsync();
+	}
+
+	@Override
+	public CompletableFuture<long[]> getNextValuesAsync(int count) {
+		return this.transactionalDao.getNextValuesAsync(count);
+	}
+}
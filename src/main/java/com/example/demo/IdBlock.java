@@ -0,0 +1,126 @@
+package com.example.demo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A block of reserved values handed out through an atomic cursor. The values are either an explicit array (identity
+ * tables, where other processes interleave their rows) or an arithmetic range (sequences and counter tables).
+ *
+ * <p>The values of a block never change once it has been created, the only mutable state is the cursor, which is
+ * advanced with a compare-and-set so that any number of threads can claim values without a lock.
+ *
+ * @author Tyler Van Gorder
+ */
+public final class IdBlock {
+
+	/** A block without values, used as the initial block of a cache. */
+	public static final IdBlock EMPTY = new IdBlock(null, 0, 0, 0);
+
+	private final long[] values;
+	private final long first;
+	private final long step;
+	private final int size;
+
+	/** The index of the next value to claim */
+	private final AtomicLong cursor = new AtomicLong();
+
+	private IdBlock(long[] values, long first, long step, int size) {
+		this.values = values;
+		this.first = first;
+		this.step = step;
+		this.size = size;
+	}
+
+	/**
+	 * Create a block that serves the given values in order.
+	 */
+	public static IdBlock of(long[] values) {
+		return new IdBlock(values, 0, 0, values.length);
+	}
+
+	/**
+	 * Create a block that serves {@code size} values starting at {@code first}, each value {@code step} apart.
+	 */
+	public static IdBlock range(long first, long step, int size) {
+		return new IdBlock(null, first, step, size);
+	}
+
+	/**
+	 * Claim the next value of the block.
+	 * @return the index of the claimed value, or -1 if the block is exhausted
+	 */
+	public int claim() {
+		for (;;) {
+			long index = this.cursor.get();
+			if (index >= this.size) {
+				return -1;
+			}
+			if (this.cursor.compareAndSet(index, index + 1)) {
+				return (int) index;
+			}
+		}
+	}
+
+	/**
+	 * Claim up to {@code count} consecutive values of the block at once, the number of values actually claimed is
+	 * {@code Math.min(count, size() - index)}.
+	 * @return the index of the first claimed value, or -1 if the block is exhausted
+	 */
+	public int claim(int count) {
+		for (;;) {
+			long index = this.cursor.get();
+			if (index >= this.size) {
+				return -1;
+			}
+			if (this.cursor.compareAndSet(index, Math.min(this.size, index + count))) {
+				return (int) index;
+			}
+		}
+	}
+
+	/**
+	 * Claim every value left in the block at once, so that no other thread can claim them.
+	 * @return the number of values claimed
+	 */
+	public int drain() {
+		long index = this.cursor.getAndSet(this.size);
+		return (int) Math.max(0, this.size - index);
+	}
+
+	/**
+	 * Return the value at the given index, the index must have been returned by {@link #claim()}.
+	 */
+	public long valueAt(int index) {
+		return (this.values != null ? this.values[index] : this.first + index * this.step);
+	}
+
+	/**
+	 * Copy {@code count} claimed values, starting at the given index, into the target array.
+	 */
+	public void copyTo(int index, long[] target, int offset, int count) {
+		if (this.values != null) {
+			System.arraycopy(this.values, index, target, offset, count);
+		}
+		else {
+			long value = this.first + index * this.step;
+			for (int i = 0; i < count; i++) {
+				target[offset + i] = value;
+				value += this.step;
+			}
+		}
+	}
+
+	/**
+	 * Return the total number of values in the block.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return the number of values that have not been claimed yet.
+	 */
+	public int remaining() {
+		return (int) Math.max(0, this.size - this.cursor.get());
+	}
+}
@@ -0,0 +1,711 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves values from the current {@link IdBlock} without taking a lock and reserves a new block from a
+ * {@link BlockSource} when the current one is exhausted.
+ *
+ * <p>While a block has values left, {@link #next()} costs one compare-and-set. Only the threads that find the block
+ * exhausted take the refill monitor, the first of them reserves the new block and the others simply retry against it.
+ *
+ * <p>If a prefetch executor is set, the next block is reserved in the background as soon as the remaining values of
+ * the current block drop to the low-water mark. Switching to that standby block is then just a reference swap on the
+ * caller's thread. A caller only waits if the standby block is not ready yet, {@link #getRefillWaitCount()} reports
+ * how often that happened. Calls to the {@link BlockSource} are serialized whether they happen in the background or
+ * on a caller's thread.
+ *
+ * <p>The statistics of the cache are only updated when blocks are switched or reserved, never when a value is served
+ * from the current block, so reading them costs nothing on the cached path.
+ *
+ * <p>{@link #fill(long[], int, int)} hands out many values with a single claim per block, and reserves a block of
+ * exactly the requested size when the request would not fit in a regular block.
+ *
+ * <p>If a stripe size is set, the cache runs unordered: each thread claims a stripe of that many values from the
+ * current block with one compare-and-set and serves its next values from the stripe without touching any shared
+ * state. Values stay unique but are no longer handed out in increasing order across threads. A thread keeps
+ * serving its stripe after the block it came from has been replaced, and the values claimed into stripes count as
+ * served, so {@link #discard()} cannot reclaim them.
+ *
+ * <p>{@link #nextAsync()} and {@link #nextAsync(int)} never wait for a refill. A caller that finds the block
+ * exhausted attaches to the refill in flight, or starts one on the async executor if there is none, and its future
+ * completes once the new block is active. However many callers arrive during a refill, they share that single call to
+ * the {@link BlockSource}. Without an async executor the refill runs on the thread of the caller that starts it.
+ *
+ * <p>If a {@link RefillRetryPolicy} is set, a refill that fails on a deadlock or a lock timeout is retried with
+ * backoff while the refill monitor is held, so the callers waiting for the block simply wait a little longer.
+ *
+ * <p>If a {@link LocalRangeJournal} is set, {@link #discard()} parks the values left in the cache in the journal instead
+ * of discarding them, and the cache serves the values parked by other processes before it reserves a new block from
+ * the {@link BlockSource}.
+ *
+ * <p>Each block has the default size given to the constructor, typically the "cacheSize" of the incrementer, unless
+ * a {@link BlockSizingPolicy} is set.
+ *
+ * @author Tyler Van Gorder
+ */
+public class IdBlockCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(IdBlockCache.class);
+
+	/** Returned by {@link #nextIfCached()} when a refill is needed, never a value of a sequence */
+	public static final long NO_CACHED_VALUE = Long.MIN_VALUE;
+
+	/**
+	 * Reserves a new block of values, typically with a round trip to the database.
+	 */
+	public interface BlockSource {
+
+		IdBlock reserveBlock(int size);
+	}
+
+	private final BlockSource source;
+
+	private final IntSupplier defaultBlockSize;
+
+	private BlockSizingPolicy sizingPolicy;
+
+	private RefillRetryPolicy retryPolicy;
+
+	private boolean refillOutsideTransaction;
+
+	/** The System.nanoTime() of the last refill, guarded by the reserve monitor */
+	private long lastRefillNanos = -1;
+
+	private final Object refillMonitor = new Object();
+
+	private final Object reserveMonitor = new Object();
+
+	private volatile IdBlock current = IdBlock.EMPTY;
+
+	/** The block being reserved in the background, if any */
+	private final AtomicReference<CompletableFuture<IdBlock>> standby = new AtomicReference<>();
+
+	private Executor prefetchExecutor;
+
+	private double lowWaterMark = 0.25;
+
+	private int stripeSize;
+
+	private Executor asyncExecutor = Runnable::run;
+
+	/** The refill started by an asynchronous caller, if any */
+	private final AtomicReference<CompletableFuture<Void>> refillFlight = new AtomicReference<>();
+
+	private LocalRangeJournal journal;
+
+	/** The ranges claimed from the journal that have not been switched to yet, guarded by the reserve monitor */
+	private final Deque<IdBlock> reclaimed = new ArrayDeque<>();
+
+	private final ThreadLocal<Stripe> stripes = ThreadLocal.withInitial(Stripe::new);
+
+	private final LongAdder refillCount = new LongAdder();
+
+	private final LongAdder refillWaitCount = new LongAdder();
+
+	private final LongAdder refillNanos = new LongAdder();
+
+	private final LongAdder lockWaitCount = new LongAdder();
+
+	private final LongAdder lockWaitNanos = new LongAdder();
+
+	/** The total size of the blocks that have been switched to */
+	private final LongAdder activatedCount = new LongAdder();
+
+	private final LongAdder discardedCount = new LongAdder();
+
+	private final LongAdder parkedCount = new LongAdder();
+
+	private final LongAdder reclaimedCount = new LongAdder();
+
+	/**
+	 * @param source reserves the blocks
+	 * @param defaultBlockSize the size of each block when no sizing policy is set
+	 */
+	public IdBlockCache(BlockSource source, IntSupplier defaultBlockSize) {
+		this.source = source;
+		this.defaultBlockSize = defaultBlockSize;
+	}
+
+	/**
+	 * Set the policy that decides the size of each block, by default every block has the default block size.
+	 */
+	public void setSizingPolicy(BlockSizingPolicy sizingPolicy) {
+		this.sizingPolicy = sizingPolicy;
+	}
+
+	/**
+	 * Set the policy that retries a refill chosen as a deadlock victim or timed out on a lock, by default a failed
+	 * refill is passed on to the caller.
+	 */
+	public void setRetryPolicy(RefillRetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public RefillRetryPolicy getRetryPolicy() {
+		return this.retryPolicy;
+	}
+
+	/**
+	 * Set whether the {@link BlockSource} reserves every block on a connection of its own and commits it right away,
+	 * never within the caller's transaction. A refill chosen as a deadlock victim is then retried even when the caller
+	 * has a transaction, see {@link RefillRetryPolicy}. Defaults to {@code false}.
+	 */
+	public void setRefillOutsideTransaction(boolean refillOutsideTransaction) {
+		this.refillOutsideTransaction = refillOutsideTransaction;
+	}
+
+	/**
+	 * Set the executor used to reserve the next block in the background. Prefetching is disabled when no executor is
+	 * set, which is the default.
+	 */
+	public void setPrefetchExecutor(Executor prefetchExecutor) {
+		this.prefetchExecutor = prefetchExecutor;
+	}
+
+	/**
+	 * Set the fraction of the current block that must be left when the next block is prefetched, defaults to 0.25.
+	 */
+	public void setLowWaterMark(double lowWaterMark) {
+		if (lowWaterMark < 0 || lowWaterMark > 1) {
+			throw new IllegalArgumentException("Property 'lowWaterMark' must be between 0 and 1");
+		}
+		this.lowWaterMark = lowWaterMark;
+	}
+
+	/**
+	 * Set the number of values each thread claims from the current block at once, which makes the cache unordered.
+	 * Defaults to 0, where every value is claimed from the shared block and values are handed out in order.
+	 */
+	public void setStripeSize(int stripeSize) {
+		if (stripeSize < 0) {
+			throw new IllegalArgumentException("Property 'stripeSize' must not be negative");
+		}
+		this.stripeSize = stripeSize;
+	}
+
+	/**
+	 * Set the executor that runs the refills started by {@link #nextAsync()} and {@link #nextAsync(int)}, by default
+	 * they run on the thread of the caller that starts them.
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Set the journal where {@link #discard()} parks the values left in the cache and where the cache looks for
+	 * values parked by other processes before it reserves a new block. Not set by default.
+	 */
+	public void setJournal(LocalRangeJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Return the next value, switching to a new block first if the current block is exhausted.
+	 */
+	public long next() {
+		if (this.stripeSize > 1) {
+			return nextFromStripe(true);
+		}
+		for (;;) {
+			IdBlock block = this.current;
+			int index = block.claim();
+			if (index >= 0) {
+				return served(block, index);
+			}
+			refill(block);
+		}
+	}
+
+	/**
+	 * Return the next value if the current block still has one, without ever reserving a block on the caller's
+	 * thread. A prefetch is still started at the low-water mark.
+	 * @return the next value, or {@link #NO_CACHED_VALUE} if the block is exhausted and {@link #next()} would refill
+	 */
+	public long nextIfCached() {
+		if (this.stripeSize > 1) {
+			return nextFromStripe(false);
+		}
+		IdBlock block = this.current;
+		int index = block.claim();
+		return (index >= 0 ? served(block, index) : NO_CACHED_VALUE);
+	}
+
+	private long served(IdBlock block, int index) {
+		// Exactly one thread claims the low-water index of a block, so at most one prefetch is triggered per block.
+		if (this.prefetchExecutor != null && index == lowWaterIndex(block)) {
+			prefetch();
+		}
+		return block.valueAt(index);
+	}
+
+	private long nextFromStripe(boolean refill) {
+		Stripe stripe = this.stripes.get();
+		if (stripe.next < stripe.end) {
+			return stripe.block.valueAt(stripe.next++);
+		}
+		for (;;) {
+			IdBlock block = this.current;
+			int index = block.claim(this.stripeSize);
+			if (index >= 0) {
+				int count = Math.min(this.stripeSize, block.size() - index);
+				claimed(block, index, count);
+				stripe.block = block;
+				stripe.next = index + 1;
+				stripe.end = index + count;
+				return block.valueAt(index);
+			}
+			if (!refill) {
+				return NO_CACHED_VALUE;
+			}
+			refill(block);
+		}
+	}
+
+	/**
+	 * Fill {@code length} elements of the target array, starting at {@code offset}, with the next values. The values
+	 * are claimed from the current block a run at a time, without allocating. A request larger than both the default
+	 * block size and the current block is served from a block of exactly that size reserved for the caller, which
+	 * leaves the current block alone.
+	 */
+	public void fill(long[] target, int offset, int length) {
+		if (isLargeRequest(length)) {
+			reserveExact(length).copyTo(0, target, offset, length);
+			return;
+		}
+		int filled = 0;
+		while (filled < length) {
+			IdBlock block = this.current;
+			int wanted = length - filled;
+			int index = block.claim(wanted);
+			if (index < 0) {
+				refill(block);
+				continue;
+			}
+			int count = Math.min(wanted, block.size() - index);
+			block.copyTo(index, target, offset + filled, count);
+			claimed(block, index, count);
+			filled += count;
+		}
+	}
+
+	/**
+	 * Fill the remaining elements of the target buffer with the next values, see {@link #fill(long[], int, int)}.
+	 */
+	public void fill(LongBuffer target) {
+		if (target.hasArray()) {
+			int length = target.remaining();
+			fill(target.array(), target.arrayOffset() + target.position(), length);
+			target.position(target.position() + length);
+			return;
+		}
+		if (isLargeRequest(target.remaining())) {
+			IdBlock block = reserveExact(target.remaining());
+			for (int i = 0; i < block.size(); i++) {
+				target.put(block.valueAt(i));
+			}
+			return;
+		}
+		while (target.hasRemaining()) {
+			IdBlock block = this.current;
+			int wanted = target.remaining();
+			int index = block.claim(wanted);
+			if (index < 0) {
+				refill(block);
+				continue;
+			}
+			int count = Math.min(wanted, block.size() - index);
+			for (int i = 0; i < count; i++) {
+				target.put(block.valueAt(index + i));
+			}
+			claimed(block, index, count);
+		}
+	}
+
+	/**
+	 * Return the next value without waiting for a refill. The future is already complete if the current block has
+	 * values left. Values are always claimed from the shared block, even in unordered mode.
+	 */
+	public CompletableFuture<Long> nextAsync() {
+		IdBlock block = this.current;
+		int index = block.claim();
+		if (index >= 0) {
+			claimed(block, index, 1);
+			return CompletableFuture.completedFuture(block.valueAt(index));
+		}
+		return refillAsync(block).thenCompose(refilled -> nextAsync());
+	}
+
+	/**
+	 * Return the next {@code count} values without waiting for a refill, see {@link #nextAsync()} and
+	 * {@link #fill(long[], int, int)}.
+	 */
+	public CompletableFuture<long[]> nextAsync(int count) {
+		if (isLargeRequest(count)) {
+			return CompletableFuture.supplyAsync(() -> {
+				long[] values = new long[count];
+				reserveExact(count).copyTo(0, values, 0, count);
+				return values;
+			}, this.asyncExecutor);
+		}
+		return fillAsync(new long[count], 0);
+	}
+
+	private CompletableFuture<long[]> fillAsync(long[] target, int offset) {
+		int filled = offset;
+		while (filled < target.length) {
+			IdBlock block = this.current;
+			int wanted = target.length - filled;
+			int index = block.claim(wanted);
+			if (index < 0) {
+				int resumeAt = filled;
+				return refillAsync(block).thenCompose(refilled -> fillAsync(target, resumeAt));
+			}
+			int count = Math.min(wanted, block.size() - index);
+			block.copyTo(index, target, filled, count);
+			claimed(block, index, count);
+			filled += count;
+		}
+		return CompletableFuture.completedFuture(target);
+	}
+
+	private CompletableFuture<Void> refillAsync(IdBlock exhausted) {
+		for (;;) {
+			CompletableFuture<Void> flight = this.refillFlight.get();
+			if (flight != null) {
+				return flight;
+			}
+			if (this.current != exhausted) {
+				return CompletableFuture.completedFuture(null);
+			}
+			CompletableFuture<Void> started = new CompletableFuture<>();
+			if (this.refillFlight.compareAndSet(null, started)) {
+				try {
+					this.asyncExecutor.execute(() -> {
+						try {
+							refill(exhausted);
+							// Cleared before completing, so the callers resumed by the future never attach to it again.
+							this.refillFlight.set(null);
+							started.complete(null);
+						}
+						catch (RuntimeException ex) {
+							this.refillFlight.set(null);
+							started.completeExceptionally(ex);
+						}
+					});
+				}
+				catch (RejectedExecutionException ex) {
+					this.refillFlight.set(null);
+					started.completeExceptionally(ex);
+				}
+				return started;
+			}
+		}
+	}
+
+	private boolean isLargeRequest(int length) {
+		return (length > this.defaultBlockSize.getAsInt() && length > this.current.size());
+	}
+
+	private void claimed(IdBlock block, int index, int count) {
+		// Exactly one claim covers the low-water index of a block, so at most one prefetch is triggered per block.
+		if (this.prefetchExecutor != null) {
+			int lowWaterIndex = lowWaterIndex(block);
+			if (index <= lowWaterIndex && lowWaterIndex < index + count) {
+				prefetch();
+			}
+		}
+	}
+
+	private int lowWaterIndex(IdBlock block) {
+		return Math.max(0, block.size() - (int) Math.ceil(block.size() * this.lowWaterMark));
+	}
+
+	private void prefetch() {
+		CompletableFuture<IdBlock> future = new CompletableFuture<>();
+		if (this.standby.compareAndSet(null, future)) {
+			try {
+				this.prefetchExecutor.execute(() -> {
+					try {
+						future.complete(reserve());
+					}
+					catch (RuntimeException ex) {
+						future.completeExceptionally(ex);
+					}
+				});
+			}
+			catch (RuntimeException ex) {
+				future.completeExceptionally(ex);
+			}
+		}
+	}
+
+	private void refill(IdBlock exhausted) {
+		long start = System.nanoTime();
+		try {
+			synchronized (this.refillMonitor) {
+				// Another thread may have replaced the block while this one was waiting for the monitor.
+				if (this.current != exhausted) {
+					return;
+				}
+				CompletableFuture<IdBlock> pending = this.standby.getAndSet(null);
+				if (pending == null || !pending.isDone()) {
+					this.refillWaitCount.increment();
+				}
+				if (pending != null) {
+					try {
+						activate(pending.join());
+						return;
+					}
+					catch (CompletionException ex) {
+						logger.debug("Prefetching the next block failed, reserving it on the caller's thread", ex.getCause());
+					}
+				}
+				activate(reserve());
+			}
+		}
+		finally {
+			this.lockWaitCount.increment();
+			this.lockWaitNanos.add(System.nanoTime() - start);
+		}
+	}
+
+	private void activate(IdBlock block) {
+		this.activatedCount.add(block.size());
+		this.current = block;
+	}
+
+	private IdBlock reserve() {
+		synchronized (this.reserveMonitor) {
+			IdBlock parked = reclaim();
+			if (parked != null) {
+				return parked;
+			}
+			long now = System.nanoTime();
+			int size = (this.sizingPolicy != null ?
+					this.sizingPolicy.nextBlockSize(this.lastRefillNanos < 0 ? -1 : now - this.lastRefillNanos) :
+					this.defaultBlockSize.getAsInt());
+			IdBlock block = reserveBlock(size);
+			this.lastRefillNanos = now;
+			this.refillCount.increment();
+			this.refillNanos.add(System.nanoTime() - now);
+			return block;
+		}
+	}
+
+	// Serves the parked values one range at a time, a range is not a refill and is left out of the block sizing.
+	private IdBlock reclaim() {
+		if (this.journal != null && this.reclaimed.isEmpty()) {
+			try {
+				for (LocalRangeJournal.Range range : this.journal.claim()) {
+					this.reclaimed.add(range.toBlock());
+					this.reclaimedCount.add(range.getCount());
+				}
+			}
+			catch (IOException ex) {
+				logger.warn("Could not claim the values parked in {}", this.journal.getPath(), ex);
+			}
+		}
+		return this.reclaimed.poll();
+	}
+
+	private IdBlock reserveExact(int size) {
+		synchronized (this.reserveMonitor) {
+			long start = System.nanoTime();
+			IdBlock block = reserveBlock(size);
+			this.refillCount.increment();
+			this.refillNanos.add(System.nanoTime() - start);
+			this.activatedCount.add(block.size());
+			block.drain();
+			return block;
+		}
+	}
+
+	private IdBlock reserveBlock(int size) {
+		return (this.retryPolicy != null ? this.retryPolicy.execute(() -> this.source.reserveBlock(size), this.refillOutsideTransaction) : this.source.reserveBlock(size));
+	}
+
+	/**
+	 * Reserve the first block ahead of the first request, typically while the application starts, so that the
+	 * first value is served from memory. Nothing is reserved if the current block still has values left.
+	 * @return whether a block was reserved
+	 */
+	public boolean warmUp() {
+		synchronized (this.refillMonitor) {
+			if (this.current.remaining() > 0) {
+				return false;
+			}
+			activate(reserve());
+			return true;
+		}
+	}
+
+	/**
+	 * Return whether the current block is down to its low-water mark and no next block is ready or being reserved,
+	 * in which case a block offered through {@link #offerStandby(IdBlock)} would be used.
+	 */
+	public boolean isRunningLow() {
+		IdBlock block = this.current;
+		return (block.remaining() <= block.size() - lowWaterIndex(block) && this.standby.get() == null);
+	}
+
+	/**
+	 * Offer a block reserved by someone else, typically together with the block of another cache, as the next block.
+	 * @return whether the block was accepted, it is not if a next block is already ready or being reserved
+	 */
+	public boolean offerStandby(IdBlock block) {
+		return this.standby.compareAndSet(null, CompletableFuture.completedFuture(block));
+	}
+
+	/**
+	 * Discard the values left in the current block and in a prefetched block, typically when the application shuts
+	 * down. If a journal is set, the values are parked in it instead, as far as it has room for them. The cache can
+	 * still be used afterwards, it will simply reserve a new block.
+	 * @return the number of values discarded, not counting the values parked
+	 */
+	public long discard() {
+		synchronized (this.refillMonitor) {
+			IdBlock block = this.current;
+			this.current = IdBlock.EMPTY;
+			int drained = block.drain();
+			long discarded = drained;
+			List<LocalRangeJournal.Range> leftovers = new ArrayList<>();
+			if (this.journal != null) {
+				// Drained values are claimed, no other thread can serve them anymore.
+				leftovers.addAll(LocalRangeJournal.ranges(block, block.size() - drained));
+			}
+			CompletableFuture<IdBlock> pending = this.standby.getAndSet(null);
+			if (pending != null && pending.isDone() && !pending.isCompletedExceptionally()) {
+				IdBlock standbyBlock = pending.join();
+				this.activatedCount.add(standbyBlock.size());
+				discarded += standbyBlock.size();
+				if (this.journal != null) {
+					leftovers.addAll(LocalRangeJournal.ranges(standbyBlock, 0));
+				}
+			}
+			synchronized (this.reserveMonitor) {
+				for (IdBlock reclaimedBlock : this.reclaimed) {
+					this.activatedCount.add(reclaimedBlock.size());
+					discarded += reclaimedBlock.size();
+					leftovers.addAll(LocalRangeJournal.ranges(reclaimedBlock, 0));
+				}
+				this.reclaimed.clear();
+			}
+			if (!leftovers.isEmpty()) {
+				try {
+					long parked = this.journal.park(leftovers);
+					this.parkedCount.add(parked);
+					discarded -= parked;
+				}
+				catch (IOException ex) {
+					logger.warn("Could not park the values left in the cache in {}", this.journal.getPath(), ex);
+				}
+			}
+			this.discardedCount.add(discarded);
+			return discarded;
+		}
+	}
+
+	/**
+	 * Return the number of values left in the current block.
+	 */
+	public int remaining() {
+		return this.current.remaining();
+	}
+
+	/**
+	 * Return the number of values served so far.
+	 */
+	public long getServedCount() {
+		return Math.max(0, this.activatedCount.sum() - this.discardedCount.sum() - this.parkedCount.sum() - remaining());
+	}
+
+	/**
+	 * Return the number of blocks reserved so far, in the background or on a caller's thread.
+	 */
+	public long getRefillCount() {
+		return this.refillCount.sum();
+	}
+
+	/**
+	 * Return the number of times a caller found the current block exhausted and had to wait for the next one.
+	 */
+	public long getRefillWaitCount() {
+		return this.refillWaitCount.sum();
+	}
+
+	/**
+	 * Return the total time spent reserving blocks, in nanoseconds.
+	 */
+	public long getRefillNanos() {
+		return this.refillNanos.sum();
+	}
+
+	/**
+	 * Return the number of times a caller entered the refill monitor because it found the current block exhausted.
+	 */
+	public long getLockWaitCount() {
+		return this.lockWaitCount.sum();
+	}
+
+	/**
+	 * Return the total time callers spent in the refill monitor, waiting for it or for the next block, in nanoseconds.
+	 */
+	public long getLockWaitNanos() {
+		return this.lockWaitNanos.sum();
+	}
+
+	/**
+	 * Return the number of values discarded by {@link #discard()}.
+	 */
+	public long getDiscardedCount() {
+		return this.discardedCount.sum();
+	}
+
+	/**
+	 * Return the number of values {@link #discard()} parked in the journal.
+	 */
+	public long getParkedCount() {
+		return this.parkedCount.sum();
+	}
+
+	/**
+	 * Return the number of values claimed from the journal, parked there by this or another process.
+	 */
+	public long getReclaimedCount() {
+		return this.reclaimedCount.sum();
+	}
+
+	/**
+	 * The values a thread has claimed from a block for itself, only ever accessed by that thread.
+	 */
+	private static final class Stripe {
+
+		private IdBlock block = IdBlock.EMPTY;
+
+		private int next;
+
+		private int end;
+	}
+
+	@Override
+	public String toString() {
+		return "IdBlockCache [remaining=" + remaining() + ", refills=" + getRefillCount()
+				+ ", refillWaits=" + getRefillWaitCount() + "]";
+	}
+}
@@ -0,0 +1,21 @@
+package com.example.demo;
+
+/**
+ * Controls how the sequence table incrementers reserve a new block of identity values.
+ *
+ * @author Tyler Van Gorder
+ */
+public enum IdentityRefillMode {
+
+	/**
+	 * Insert one row and select {@code @@identity} for each value in the block, this costs two round trips per value.
+	 * Kept as a fallback for databases that reject the set-based statement.
+	 */
+	ROW_BY_ROW,
+
+	/**
+	 * Insert all the rows of the block with a single {@code MERGE ... OUTPUT INSERTED} statement and read every
+	 * generated value from its result set, this costs one round trip per block regardless of the cache size.
+	 */
+	SET_BASED;
+}
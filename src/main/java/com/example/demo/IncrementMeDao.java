@@ -1,6 +1,62 @@
 package com.example.demo;
 
+import java.nio.LongBuffer;
+import java.util.concurrent.CompletableFuture;
+
 public interface IncrementMeDao {
 
+	/**
+	 * Return the next value as an int. Not supported by the SNOWFLAKE strategy, whose values do not fit into an int,
+	 * use {@link #getNextLongValue()} or one of the bulk methods instead.
+	 * @throws org.springframework.dao.InvalidDataAccessApiUsageException with the SNOWFLAKE strategy
+	 */
 	public int getNextValue(); 
+
+	/**
+	 * Return the next value as a long, for the strategies whose values do not fit into an int.
+	 */
+	public default long getNextLongValue() {
+		return getNextValue();
+	}
+
+	/**
+	 * Return the next {@code count} values.
+	 */
+	public default long[] getNextValues(int count) {
+		long[] values = new long[count];
+		getNextValues(values, 0, count);
+		return values;
+	}
+
+	/**
+	 * Fill {@code length} elements of the target array, starting at {@code offset}, with the next values.
+	 */
+	public default void getNextValues(long[] target, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			target[offset + i] = getNextLongValue();
+		}
+	}
+
+	/**
+	 * Fill the remaining elements of the target buffer with the next values.
+	 */
+	public default void getNextValues(LongBuffer target) {
+		while (target.hasRemaining()) {
+			target.put(getNextLongValue());
+		}
+	}
+
+	/**
+	 * Return a future of the next value, the caller does not wait while new values are reserved.
+	 */
+	public default CompletableFuture<Long> getNextValueAsync() {
+		return CompletableFuture.completedFuture(getNextLongValue());
+	}
+
+	/**
+	 * Return a future of the next {@code count} values, the caller does not wait while new values are reserved.
+	 */
+	public default CompletableFuture<long[]> getNextValuesAsync(int count) {
+		return CompletableFuture.completedFuture(getNextValues(count));
+	}
 }
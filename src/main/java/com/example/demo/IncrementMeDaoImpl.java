@@ -1,8 +1,35 @@
 package com.example.demo;
 
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.jdbc.support.incrementer.AbstractDataFieldMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.SqlServerMaxValueIncrementer;
 import org.springframework.stereotype.Repository;
@@ -10,21 +37,76 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Repository
 @ConfigurationProperties("example")
 public class IncrementMeDaoImpl implements IncrementMeDao {
 
+	private static final Logger logger = LoggerFactory.getLogger(IncrementMeDaoImpl.class);
+
 	private final DataSource dataSource;
 
 	//Only used with Nested transaction stategy.
 	private final PlatformTransactionManager transactionManager;
 
-	private DataFieldMaxValueIncrementer incrementer;
+	//Only used when prefetching is enabled and for the refills of asynchronous requests.
+	private final TaskExecutor prefetchExecutor;
+
+	//Only used with the passive reaper, app lock and sharded strategies and the snowflake lease renewals.
+	private final TaskScheduler reaperScheduler;
+
+	private final MeterRegistry meterRegistry;
+
+	//Only used when the table strategies refill outside of the caller's transaction, and to key the range journals.
+	private final DataSourceProperties dataSourceProperties;
+	private HikariDataSource refillDataSource;
+
+	//Only used by the delete queues of the nested transaction strategy.
+	private ThreadPoolTaskScheduler deleteQueueScheduler;
+
+	private final IncrementerRegistry registry = new IncrementerRegistry(this::createIncrementer);
+	private final SequenceRangeBatch sequenceRangeBatch;
+	private final List<RangeDeleteQueue> rangeDeleteQueues = new CopyOnWriteArrayList<>();
+	private final List<LocalRangeJournal> rangeJournals = new CopyOnWriteArrayList<>();
 	private IncrementStrategy incrementStrategy = IncrementStrategy.DEFAULT_NOT_SHARED;
+	private int cacheSize = 1;
+	private IdentityRefillMode identityRefillMode = IdentityRefillMode.SET_BASED;
+	private boolean prefetch = false;
+	private double lowWaterMark = 0.25;
+	private int reaperBatchSize = 1000;
+	private boolean deleteQueue = false;
+	private Duration deleteInterval = Duration.ofSeconds(1);
+	private boolean adaptiveSizing = false;
+	private int minBlockSize = 10;
+	private int maxBlockSize = 10000;
+	private Duration targetRefillInterval = Duration.ofSeconds(1);
+	private int stripeSize = 0;
+	private int refillPoolSize = 0;
+	private Duration workerLeaseDuration = Duration.ofSeconds(30);
+	private Duration appLockTimeout = Duration.ofSeconds(5);
+	private int shardCount = 4;
+	private int shard = -1;
+	private int refillRetries = 0;
+	private Duration maxRetryBackoff = Duration.ofMillis(500);
+	private boolean warmUpOnStartup = false;
+	private List<String> warmUpSequences = new ArrayList<>();
+	private boolean rangeJournal = false;
+	private Path rangeJournalDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "incrementer-journal");
 	
-	public IncrementMeDaoImpl(DataSource dataSource, PlatformTransactionManager transactionManager) {
+	public IncrementMeDaoImpl(DataSource dataSource, PlatformTransactionManager transactionManager,
+			@Qualifier("incrementerPrefetchExecutor") TaskExecutor prefetchExecutor,
+			@Qualifier("incrementerReaperScheduler") TaskScheduler reaperScheduler, MeterRegistry meterRegistry,
+			DataSourceProperties dataSourceProperties) {
 		this.dataSource = dataSource;
 		this.transactionManager = transactionManager;
+		this.prefetchExecutor = prefetchExecutor;
+		this.reaperScheduler = reaperScheduler;
+		this.meterRegistry = meterRegistry;
+		this.dataSourceProperties = dataSourceProperties;
+		this.sequenceRangeBatch = new SequenceRangeBatch(dataSource);
 	}
 
 	// Pre-condition to get the deadlock error:
@@ -35,36 +117,470 @@ public class IncrementMeDaoImpl implements IncrementMeDao {
 	@Override
 	@Transactional(readOnly=false, isolation=Isolation.READ_COMMITTED)
 	public int getNextValue() {
+		if (incrementStrategy == IncrementStrategy.SNOWFLAKE) {
+			throw intValuesNotSupported(incrementStrategy);
+		}
 		return getIncrementer().nextIntValue();
 	}
 
+	static InvalidDataAccessApiUsageException intValuesNotSupported(IncrementStrategy strategy) {
+		return new InvalidDataAccessApiUsageException("The values of the " + strategy
+				+ " strategy do not fit into an int, use getNextLongValue() or one of the bulk methods");
+	}
+
+	@Override
+	@Transactional(readOnly=false, isolation=Isolation.READ_COMMITTED)
+	public long getNextLongValue() {
+		return getIncrementer().nextLongValue();
+	}
+
+	// One transaction and one call to the incrementer per chunk of values instead of one per value.
+	@Override
+	@Transactional(readOnly=false, isolation=Isolation.READ_COMMITTED)
+	public long[] getNextValues(int count) {
+		long[] values = new long[count];
+		getNextValues(values, 0, count);
+		return values;
+	}
+
+	@Override
+	@Transactional(readOnly=false, isolation=Isolation.READ_COMMITTED)
+	public void getNextValues(long[] target, int offset, int length) {
+		DataFieldMaxValueIncrementer incrementer = getIncrementer();
+		if (incrementer instanceof BulkIncrementer) {
+			((BulkIncrementer) incrementer).nextLongValues(target, offset, length);
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			target[offset + i] = incrementer.nextLongValue();
+		}
+	}
+
+	@Override
+	@Transactional(readOnly=false, isolation=Isolation.READ_COMMITTED)
+	public void getNextValues(LongBuffer target) {
+		DataFieldMaxValueIncrementer incrementer = getIncrementer();
+		if (incrementer instanceof BulkIncrementer) {
+			((BulkIncrementer) incrementer).nextLongValues(target);
+			return;
+		}
+		while (target.hasRemaining()) {
+			target.put(incrementer.nextLongValue());
+		}
+	}
+
+	// No transaction: the values of an asynchronous request may be reserved on another thread, where the caller's
+	// transaction is not visible anyway.
+	@Override
+	public CompletableFuture<Long> getNextValueAsync() {
+		DataFieldMaxValueIncrementer incrementer = getIncrementer();
+		if (incrementer instanceof AsyncIncrementer) {
+			return ((AsyncIncrementer) incrementer).nextValueAsync();
+		}
+		return CompletableFuture.supplyAsync(incrementer::nextLongValue, prefetchExecutor);
+	}
+
+	@Override
+	public CompletableFuture<long[]> getNextValuesAsync(int count) {
+		DataFieldMaxValueIncrementer incrementer = getIncrementer();
+		if (incrementer instanceof AsyncIncrementer) {
+			return ((AsyncIncrementer) incrementer).nextValuesAsync(count);
+		}
+		return CompletableFuture.supplyAsync(() -> {
+			long[] values = new long[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = incrementer.nextLongValue();
+			}
+			return values;
+		}, prefetchExecutor);
+	}
+
+	// Runs before the command-line runners, which is where a task does its work, so the first request of a short-lived
+	// task is served from memory instead of paying for building the incrementer and reserving its first block.
+	@EventListener(ContextRefreshedEvent.class)
+	public void onContextRefreshed() {
+		if (warmUpOnStartup) {
+			warmUpIncrementers();
+		}
+	}
+
+	/**
+	 * Build the incrementer of the configured sequence and of the "warm-up-sequences", and reserve their first blocks
+	 * in parallel on the prefetch executor.
+	 * @return the time the warm-up took
+	 */
+	public Duration warmUpIncrementers() {
+		if (incrementStrategy == IncrementStrategy.DEFAULT_NOT_SHARED) {
+			logger.info("Nothing to warm up, {} builds a new incrementer for every value", incrementStrategy);
+			return Duration.ZERO;
+		}
+		long start = System.nanoTime();
+		Set<String> names = new LinkedHashSet<>();
+		names.add(getIncrementerName());
+		names.addAll(warmUpSequences);
+		List<CompletableFuture<Void>> warmUps = new ArrayList<>();
+		for (String name : names) {
+			warmUps.add(CompletableFuture.runAsync(() -> warmUp(name), prefetchExecutor));
+		}
+		CompletableFuture.allOf(warmUps.toArray(new CompletableFuture<?>[0])).join();
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		meterRegistry.timer("incrementer.warmup", "strategy", incrementStrategy.name()).record(elapsed);
+		logger.info("Warmed up {} incrementers in {} ms", names.size(), elapsed.toMillis());
+		return elapsed;
+	}
+
+	private void warmUp(String name) {
+		long start = System.nanoTime();
+		try {
+			DataFieldMaxValueIncrementer incrementer = registry.getIncrementer(name);
+			boolean reserved = false;
+			if (incrementer instanceof BlockCachingIncrementer) {
+				// The refill runs the statements the later refills will run, so the driver and the server have them ready.
+				reserved = ((BlockCachingIncrementer) incrementer).getValueCache().warmUp();
+			}
+			else {
+				// Nothing to reserve up front, but the first request should at least not be the one to open a connection.
+				try (Connection con = dataSource.getConnection()) {
+					con.isValid(1);
+				}
+			}
+			logger.info("Warmed up {} in {} ms{}", name, (System.nanoTime() - start) / 1000000, reserved ? ", first block reserved" : "");
+		}
+		catch (DataAccessException | SQLException ex) {
+			// Not fatal, the first request will try again.
+			logger.warn("Could not warm up {}", name, ex);
+		}
+	}
+
 	private DataFieldMaxValueIncrementer getIncrementer() {
-	
-		if (incrementStrategy != IncrementStrategy.DEFAULT_NOT_SHARED && incrementer != null) {
-			return incrementer;
+		if (incrementStrategy == IncrementStrategy.DEFAULT_NOT_SHARED) {
+			// Deliberately a new incrementer for every value, this is the strategy that demonstrates the deadlock.
+			return createIncrementer(getIncrementerName());
 		}
+		return registry.getIncrementer(getIncrementerName());
+	}
+
+	/**
+	 * Return the incrementer of the configured sequence, creating it on first use, or {@code null} if the strategy
+	 * builds a new incrementer for every value.
+	 */
+	public DataFieldMaxValueIncrementer getSharedIncrementer() {
+		return (incrementStrategy == IncrementStrategy.DEFAULT_NOT_SHARED ? null : registry.getIncrementer(getIncrementerName()));
+	}
+
+	public IncrementStrategy getIncrementStrategy() {
+		return incrementStrategy;
+	}
+
+	/**
+	 * Return the registry of the long-lived incrementers, one per sequence name, all built with the configured strategy.
+	 */
+	public IncrementerRegistry getIncrementerRegistry() {
+		return registry;
+	}
 
+	private DataFieldMaxValueIncrementer createIncrementer(String name) {
+		DataFieldMaxValueIncrementer incrementer = null;
 		switch (incrementStrategy) {
 			case DEFAULT_NOT_SHARED :
 			case DEFAULT_SHARED:
-				incrementer = new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id");
+				incrementer = new SqlServerMaxValueIncrementer(dataSource, name, "id");
 				break;			
 			case NESTED_TRANSACTION_ON_DELETE :
-				incrementer = new NestedTransactionOnDeleteValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", transactionManager);
+				NestedTransactionOnDeleteValueIncrementer nestedIncrementer = new NestedTransactionOnDeleteValueIncrementer(dataSource, name, "id", transactionManager);
+				if (deleteQueue) {
+					RangeDeleteQueue rangeDeleteQueue = new RangeDeleteQueue(dataSource, name, "id", getDeleteQueueScheduler());
+					rangeDeleteQueue.setMaxRowsPerDelete(reaperBatchSize);
+					rangeDeleteQueue.start(deleteInterval);
+					nestedIncrementer.setDeleteQueue(rangeDeleteQueue);
+					rangeDeleteQueues.add(rangeDeleteQueue);
+				}
+				incrementer = configure(nestedIncrementer);
 				break;							
 			case PASSIVE_REAPER :
-				incrementer = new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id");
+				com.example.demo.SqlServerMaxValueIncrementer reapingIncrementer = new com.example.demo.SqlServerMaxValueIncrementer(dataSource, name, "id");
+				reapingIncrementer.setReaperScheduler(reaperScheduler);
+				reapingIncrementer.setReaperBatchSize(reaperBatchSize);
+				incrementer = configure(reapingIncrementer);
 				break;				
+			case APP_LOCK :
+				SqlServerAppLockMaxValueIncrementer appLockIncrementer = new SqlServerAppLockMaxValueIncrementer(dataSource, name, "id");
+				appLockIncrementer.setAppLockTimeout(appLockTimeout);
+				appLockIncrementer.setReaperScheduler(reaperScheduler);
+				appLockIncrementer.setReaperBatchSize(reaperBatchSize);
+				incrementer = configure(appLockIncrementer);
+				break;
+			case SHARDED :
+				ShardedSqlServerMaxValueIncrementer shardedIncrementer = (shard < 0
+						? new ShardedSqlServerMaxValueIncrementer(dataSource, name, "id", shardCount)
+						: new ShardedSqlServerMaxValueIncrementer(dataSource, name, "id", shardCount, shard));
+				shardedIncrementer.setReaperScheduler(reaperScheduler);
+				shardedIncrementer.setReaperBatchSize(reaperBatchSize);
+				logger.info("Inserting the values of {} into {}", name, shardedIncrementer.getIncrementerName());
+				incrementer = configure(shardedIncrementer);
+				break;
 			case SEQUENCE :
-				incrementer = new SqlServerSequenceMaxValueIncrementer(dataSource, "EXAMPLE_REAL_SEQUENCE");
+				SqlServerSequenceMaxValueIncrementer sequenceIncrementer = new SqlServerSequenceMaxValueIncrementer(dataSource, name);
+				sequenceIncrementer.setAsyncExecutor(prefetchExecutor);
+				if (refillRetries > 0) {
+					sequenceIncrementer.setRetryPolicy(createRetryPolicy());
+				}
+				incrementer = sequenceIncrementer;
+				break;
+			case SEQUENCE_RANGE :
+				SqlServerSequenceRangeMaxValueIncrementer rangeIncrementer = new SqlServerSequenceRangeMaxValueIncrementer(dataSource, name, cacheSize);
+				// Sequences that run low at the same time are refilled with one round trip.
+				sequenceRangeBatch.register(rangeIncrementer);
+				incrementer = rangeIncrementer;
+				break;
+			case HI_LO :
+				SqlServerHiLoMaxValueIncrementer hiLoIncrementer = new SqlServerHiLoMaxValueIncrementer(dataSource, name, "next_val");
+				hiLoIncrementer.setCacheSize(cacheSize);
+				if (refillPoolSize > 0) {
+					hiLoIncrementer.setRefillDataSource(getRefillDataSource());
+				}
+				incrementer = hiLoIncrementer;
 				break;
+			case SNOWFLAKE :
+				SnowflakeMaxValueIncrementer snowflakeIncrementer = new SnowflakeMaxValueIncrementer(dataSource, name, reaperScheduler);
+				snowflakeIncrementer.getLease().setDuration(workerLeaseDuration);
+				// Lease the worker id now rather than on the first request.
+				snowflakeIncrementer.start();
+				incrementer = snowflakeIncrementer;
+				break;
+		}
+		if (incrementer instanceof BlockCachingIncrementer) {
+			configure(((BlockCachingIncrementer) incrementer).getValueCache());
+			if (rangeJournal) {
+				((BlockCachingIncrementer) incrementer).getValueCache().setJournal(openRangeJournal(name));
+			}
+		}
+		// The default incrementers are Spring's own and keep no statistics.
+		if (incrementStrategy != IncrementStrategy.DEFAULT_NOT_SHARED && incrementStrategy != IncrementStrategy.DEFAULT_SHARED) {
+			new IncrementerMetrics(incrementer, name, incrementStrategy).bindTo(meterRegistry);
 		}
 		return incrementer;
 	}
 
+	private String getIncrementerName() {
+		switch (incrementStrategy) {
+			case SEQUENCE :
+			case SEQUENCE_RANGE :
+				return "EXAMPLE_REAL_SEQUENCE";
+			case HI_LO :
+				return "EXAMPLE_HILO_SEQ";
+			case SNOWFLAKE :
+				return "EXAMPLE_WORKER_LEASE";
+			default :
+				return "EXAMPLE_SEQ";
+		}
+	}
+
+	// Values left in the cache when the application stops are lost, which leaves a gap in the keys. Log how many.
+	@PreDestroy
+	public void discardCachedValues() {
+		for (RangeDeleteQueue rangeDeleteQueue : rangeDeleteQueues) {
+			rangeDeleteQueue.stop();
+		}
+		for (DataFieldMaxValueIncrementer incrementer : registry.getIncrementers()) {
+			if (incrementer instanceof com.example.demo.SqlServerMaxValueIncrementer) {
+				((com.example.demo.SqlServerMaxValueIncrementer) incrementer).stopReaper();
+			}
+			if (incrementer instanceof SnowflakeMaxValueIncrementer) {
+				((SnowflakeMaxValueIncrementer) incrementer).stop();
+			}
+			if (incrementer instanceof BlockCachingIncrementer) {
+				IdBlockCache valueCache = ((BlockCachingIncrementer) incrementer).getValueCache();
+				long parked = valueCache.getParkedCount();
+				long discarded = valueCache.discard();
+				logger.info("Discarded {} and parked {} cached values of {}", discarded, valueCache.getParkedCount() - parked,
+						((AbstractDataFieldMaxValueIncrementer) incrementer).getIncrementerName());
+			}
+		}
+		for (LocalRangeJournal journal : rangeJournals) {
+			try {
+				journal.close();
+			}
+			catch (IOException ex) {
+				logger.warn("Could not close the range journal {}", journal.getPath(), ex);
+			}
+		}
+		synchronized (this) {
+			if (refillDataSource != null) {
+				refillDataSource.close();
+			}
+			if (deleteQueueScheduler != null) {
+				deleteQueueScheduler.shutdown();
+			}
+		}
+	}
+
+	private void configure(IdBlockCache valueCache) {
+		if (prefetch) {
+			valueCache.setPrefetchExecutor(prefetchExecutor);
+			valueCache.setLowWaterMark(lowWaterMark);
+		}
+		if (adaptiveSizing) {
+			valueCache.setSizingPolicy(new AdaptiveBlockSizingPolicy(minBlockSize, maxBlockSize, targetRefillInterval));
+		}
+		valueCache.setStripeSize(stripeSize);
+		valueCache.setAsyncExecutor(prefetchExecutor);
+		if (refillRetries > 0) {
+			valueCache.setRetryPolicy(createRetryPolicy());
+		}
+	}
+
+	// One journal per database, strategy and sequence. The processes of a host share it through the file, the database
+	// is part of the key so that values parked for another database are never served. Without a journal the cache simply
+	// discards its values, as it always did.
+	private LocalRangeJournal openRangeJournal(String name) {
+		Path path = rangeJournalDirectory.resolve(incrementStrategy + "-" + name + ".journal");
+		try {
+			LocalRangeJournal journal = new LocalRangeJournal(path, dataSourceProperties.getUrl() + " " + incrementStrategy + " " + name);
+			rangeJournals.add(journal);
+			return journal;
+		}
+		catch (IOException ex) {
+			logger.warn("Could not open the range journal {}, the cached values of {} will be discarded", path, name, ex);
+			return null;
+		}
+	}
+
+	private RefillRetryPolicy createRetryPolicy() {
+		RefillRetryPolicy retryPolicy = new RefillRetryPolicy();
+		retryPolicy.setMaxRetries(refillRetries);
+		retryPolicy.setMaxBackoff(maxRetryBackoff);
+		return retryPolicy;
+	}
+
+	private AbstractSqlServerTableMaxValueIncrementer configure(AbstractSqlServerTableMaxValueIncrementer tableIncrementer) {
+		tableIncrementer.setCacheSize(cacheSize);
+		tableIncrementer.setRefillMode(identityRefillMode);
+		if (refillPoolSize > 0) {
+			tableIncrementer.setRefillDataSource(getRefillDataSource());
+		}
+		return tableIncrementer;
+	}
+
+	// A thread of its own: a delete may wait on locks for up to its query timeout, which must not hold up the reapers
+	// and the worker lease renewals on the reaper scheduler.
+	private synchronized TaskScheduler getDeleteQueueScheduler() {
+		if (deleteQueueScheduler == null) {
+			deleteQueueScheduler = new ThreadPoolTaskScheduler();
+			deleteQueueScheduler.setDaemon(true);
+			deleteQueueScheduler.setThreadNamePrefix("IncrementerDeleteQueue-");
+			deleteQueueScheduler.initialize();
+		}
+		return deleteQueueScheduler;
+	}
+
+	// A pool of its own: every caller of a refill already holds a connection of the main pool in its transaction.
+	private synchronized DataSource getRefillDataSource() {
+		if (refillDataSource == null) {
+			refillDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+			refillDataSource.setPoolName("IncrementerRefill");
+			refillDataSource.setMaximumPoolSize(refillPoolSize);
+			refillDataSource.setMinimumIdle(0);
+			refillDataSource.setAutoCommit(true);
+		}
+		return refillDataSource;
+	}
+
 	public void setIncrementStrategy(IncrementStrategy incrementStrategy) {
 		this.incrementStrategy = incrementStrategy;
 	}
 
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	public void setIdentityRefillMode(IdentityRefillMode identityRefillMode) {
+		this.identityRefillMode = identityRefillMode;
+	}
+
+	public void setPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+	}
+
+	public void setLowWaterMark(double lowWaterMark) {
+		this.lowWaterMark = lowWaterMark;
+	}
+
+	public void setReaperBatchSize(int reaperBatchSize) {
+		this.reaperBatchSize = reaperBatchSize;
+	}
+
+	public void setDeleteQueue(boolean deleteQueue) {
+		this.deleteQueue = deleteQueue;
+	}
+
+	public void setDeleteInterval(Duration deleteInterval) {
+		this.deleteInterval = deleteInterval;
+	}
+
+	public void setAdaptiveSizing(boolean adaptiveSizing) {
+		this.adaptiveSizing = adaptiveSizing;
+	}
+
+	public void setMinBlockSize(int minBlockSize) {
+		this.minBlockSize = minBlockSize;
+	}
+
+	public void setMaxBlockSize(int maxBlockSize) {
+		this.maxBlockSize = maxBlockSize;
+	}
+
+	public void setTargetRefillInterval(Duration targetRefillInterval) {
+		this.targetRefillInterval = targetRefillInterval;
+	}
+
+	public void setStripeSize(int stripeSize) {
+		this.stripeSize = stripeSize;
+	}
+
+	public void setRefillPoolSize(int refillPoolSize) {
+		this.refillPoolSize = refillPoolSize;
+	}
+
+	public void setWorkerLeaseDuration(Duration workerLeaseDuration) {
+		this.workerLeaseDuration = workerLeaseDuration;
+	}
+
+	public void setAppLockTimeout(Duration appLockTimeout) {
+		this.appLockTimeout = appLockTimeout;
+	}
+
+	public void setShardCount(int shardCount) {
+		this.shardCount = shardCount;
+	}
+
+	public void setShard(int shard) {
+		this.shard = shard;
+	}
+
+	public void setRefillRetries(int refillRetries) {
+		this.refillRetries = refillRetries;
+	}
+
+	public void setMaxRetryBackoff(Duration maxRetryBackoff) {
+		this.maxRetryBackoff = maxRetryBackoff;
+	}
+
+	public void setWarmUpOnStartup(boolean warmUpOnStartup) {
+		this.warmUpOnStartup = warmUpOnStartup;
+	}
+
+	public void setWarmUpSequences(List<String> warmUpSequences) {
+		this.warmUpSequences = warmUpSequences;
+	}
+
+	public void setRangeJournal(boolean rangeJournal) {
+		this.rangeJournal = rangeJournal;
+	}
+
+	public void setRangeJournalDirectory(Path rangeJournalDirectory) {
+		this.rangeJournalDirectory = rangeJournalDirectory;
+	}
+
 	
 }
@@ -6,5 +6,10 @@ public enum IncrementStrategy {
 	DEFAULT_NOT_SHARED,
 	NESTED_TRANSACTION_ON_DELETE,
 	PASSIVE_REAPER,
-	SEQUENCE;
+	APP_LOCK,
+	SHARDED,
+	SEQUENCE,
+	SEQUENCE_RANGE,
+	HI_LO,
+	SNOWFLAKE;
 }
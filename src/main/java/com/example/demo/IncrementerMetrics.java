@@ -0,0 +1,132 @@
+package com.example.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the statistics of an incrementer to a {@link MeterRegistry}. Every meter is tagged with the name of the
+ * incrementer and the strategy that created it.
+ *
+ * <p>The meters are function based: they read the counters the incrementers keep anyway whenever the registry is
+ * scraped, so nothing is recorded on the path that serves a cached value.
+ *
+ * <ul>
+ * <li>{@code incrementer.values.served} - the values handed out.</li>
+ * <li>{@code incrementer.refill} - a timer of the round trips that reserve new values.</li>
+ * <li>{@code incrementer.refill.waits} - how often a caller found the cache empty and had to wait for a refill.</li>
+ * <li>{@code incrementer.lock.wait} - a timer of the time callers spent in the refill monitor.</li>
+ * <li>{@code incrementer.block.remaining} - the values left in the current block.</li>
+ * <li>{@code incrementer.values.discarded} - the cached values thrown away at shutdown.</li>
+ * <li>{@code incrementer.reaper.runs} and {@code incrementer.reaper.rows.deleted} - the deletes of the identity
+ * table incrementers.</li>
+ * <li>{@code incrementer.refill.retries}, {@code incrementer.refill.retries.exhausted},
+ * {@code incrementer.refill.deadlock.victims} and {@code incrementer.refill.lock.timeouts} - the retries of failed
+ * refills, when a {@link RefillRetryPolicy} is set.</li>
+ * <li>{@code incrementer.snowflake.overflows} and {@code incrementer.snowflake.clock.regressions} - the counter
+ * overflows and the refused requests of a {@link SnowflakeMaxValueIncrementer}.</li>
+ * <li>{@code incrementer.applock.wait} and {@code incrementer.applock.timeouts} - the time refills waited for the
+ * application lock of a {@link SqlServerAppLockMaxValueIncrementer} and the refills that went ahead without it.</li>
+ * </ul>
+ *
+ * A plain {@link SqlServerSequenceMaxValueIncrementer} has no cache, each query is a refill of its own.
+ *
+ * @author Tyler Van Gorder
+ */
+public class IncrementerMetrics implements MeterBinder {
+
+	private final DataFieldMaxValueIncrementer incrementer;
+
+	private final Tags tags;
+
+	/**
+	 * @param incrementer the incrementer to instrument
+	 * @param name the name of the incrementer, typically its table or sequence
+	 * @param strategy the strategy that created the incrementer
+	 */
+	public IncrementerMetrics(DataFieldMaxValueIncrementer incrementer, String name, IncrementStrategy strategy) {
+		this.incrementer = incrementer;
+		this.tags = Tags.of(Tag.of("name", name), Tag.of("strategy", strategy.name()));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		if (this.incrementer instanceof BlockCachingIncrementer) {
+			bindValueCache(registry, ((BlockCachingIncrementer) this.incrementer).getValueCache());
+		}
+		else if (this.incrementer instanceof SqlServerSequenceMaxValueIncrementer) {
+			SqlServerSequenceMaxValueIncrementer sequence = (SqlServerSequenceMaxValueIncrementer) this.incrementer;
+			FunctionCounter.builder("incrementer.values.served", sequence, SqlServerSequenceMaxValueIncrementer::getServedCount)
+					.tags(this.tags).description("The number of values served").register(registry);
+			FunctionTimer.builder("incrementer.refill", sequence, SqlServerSequenceMaxValueIncrementer::getQueryCount,
+					SqlServerSequenceMaxValueIncrementer::getQueryNanos, TimeUnit.NANOSECONDS)
+					.tags(this.tags).description("The round trips to the database that reserve new values").register(registry);
+			bindRetryPolicy(registry, sequence.getRetryPolicy());
+		}
+		else if (this.incrementer instanceof SnowflakeMaxValueIncrementer) {
+			SnowflakeMaxValueIncrementer snowflake = (SnowflakeMaxValueIncrementer) this.incrementer;
+			FunctionCounter.builder("incrementer.values.served", snowflake, SnowflakeMaxValueIncrementer::getServedCount)
+					.tags(this.tags).description("The number of values served").register(registry);
+			FunctionCounter.builder("incrementer.snowflake.overflows", snowflake, SnowflakeMaxValueIncrementer::getOverflowCount)
+					.tags(this.tags).description("The number of times the counter of a millisecond was exhausted").register(registry);
+			FunctionCounter.builder("incrementer.snowflake.clock.regressions", snowflake, SnowflakeMaxValueIncrementer::getClockRegressionCount)
+					.tags(this.tags).description("The number of requests refused because the clock had moved backwards").register(registry);
+		}
+		if (this.incrementer instanceof SqlServerAppLockMaxValueIncrementer) {
+			SqlServerAppLockMaxValueIncrementer appLock = (SqlServerAppLockMaxValueIncrementer) this.incrementer;
+			FunctionTimer.builder("incrementer.applock.wait", appLock, SqlServerAppLockMaxValueIncrementer::getAppLockWaitCount,
+					SqlServerAppLockMaxValueIncrementer::getAppLockWaitNanos, TimeUnit.NANOSECONDS)
+					.tags(this.tags).description("The time refills spent waiting for the application lock").register(registry);
+			FunctionCounter.builder("incrementer.applock.timeouts", appLock, SqlServerAppLockMaxValueIncrementer::getAppLockTimeoutCount)
+					.tags(this.tags).description("The number of refills that went ahead without the application lock").register(registry);
+		}
+		if (this.incrementer instanceof ReapingIncrementer) {
+			ReapingIncrementer reaping = (ReapingIncrementer) this.incrementer;
+			FunctionCounter.builder("incrementer.reaper.runs", reaping, ReapingIncrementer::getReaperRunCount)
+					.tags(this.tags).description("The number of deletes run against the identity table").register(registry);
+			FunctionCounter.builder("incrementer.reaper.rows.deleted", reaping, ReapingIncrementer::getReapedRowCount)
+					.tags(this.tags).description("The number of rows deleted from the identity table").register(registry);
+		}
+	}
+
+	private void bindValueCache(MeterRegistry registry, IdBlockCache valueCache) {
+		FunctionCounter.builder("incrementer.values.served", valueCache, IdBlockCache::getServedCount)
+				.tags(this.tags).description("The number of values served").register(registry);
+		FunctionTimer.builder("incrementer.refill", valueCache, IdBlockCache::getRefillCount, IdBlockCache::getRefillNanos,
+				TimeUnit.NANOSECONDS)
+				.tags(this.tags).description("The round trips to the database that reserve new values").register(registry);
+		FunctionCounter.builder("incrementer.refill.waits", valueCache, IdBlockCache::getRefillWaitCount)
+				.tags(this.tags).description("The number of times a caller had to wait for a refill").register(registry);
+		FunctionTimer.builder("incrementer.lock.wait", valueCache, IdBlockCache::getLockWaitCount, IdBlockCache::getLockWaitNanos,
+				TimeUnit.NANOSECONDS)
+				.tags(this.tags).description("The time callers spent in the refill monitor").register(registry);
+		FunctionCounter.builder("incrementer.values.discarded", valueCache, IdBlockCache::getDiscardedCount)
+				.tags(this.tags).description("The number of cached values discarded at shutdown").register(registry);
+		Gauge.builder("incrementer.block.remaining", valueCache, IdBlockCache::remaining)
+				.tags(this.tags).description("The number of values left in the current block").register(registry);
+		bindRetryPolicy(registry, valueCache.getRetryPolicy());
+	}
+
+	private void bindRetryPolicy(MeterRegistry registry, RefillRetryPolicy retryPolicy) {
+		if (retryPolicy == null) {
+			return;
+		}
+		FunctionTimer.builder("incrementer.refill.retries", retryPolicy, RefillRetryPolicy::getRetryCount, RefillRetryPolicy::getRetryNanos,
+				TimeUnit.NANOSECONDS)
+				.tags(this.tags).description("The retries of refills that failed on a deadlock or a lock timeout").register(registry);
+		FunctionCounter.builder("incrementer.refill.retries.exhausted", retryPolicy, RefillRetryPolicy::getExhaustedCount)
+				.tags(this.tags).description("The number of refills that still failed after the last retry").register(registry);
+		FunctionCounter.builder("incrementer.refill.deadlock.victims", retryPolicy, RefillRetryPolicy::getDeadlockVictimCount)
+				.tags(this.tags).description("The number of refills chosen as deadlock victims").register(registry);
+		FunctionCounter.builder("incrementer.refill.lock.timeouts", retryPolicy, RefillRetryPolicy::getLockTimeoutCount)
+				.tags(this.tags).description("The number of refills that failed on a lock timeout").register(registry);
+	}
+}
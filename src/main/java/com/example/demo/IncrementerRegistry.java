@@ -0,0 +1,48 @@
+package com.example.demo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * Keeps one long-lived incrementer per sequence name, so every caller of a sequence shares its cached values.
+ *
+ * <p>The incrementer of a name is created by the factory given to the constructor the first time the name is
+ * requested. The registry is thread-safe and the factory is called at most once per name.
+ *
+ * @author Tyler Van Gorder
+ */
+public class IncrementerRegistry {
+
+	private final ConcurrentMap<String, DataFieldMaxValueIncrementer> incrementers = new ConcurrentHashMap<>();
+
+	private final Function<String, ? extends DataFieldMaxValueIncrementer> factory;
+
+	/**
+	 * @param factory creates the incrementer of a sequence name
+	 */
+	public IncrementerRegistry(Function<String, ? extends DataFieldMaxValueIncrementer> factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Return the incrementer of the given sequence, creating it on first use. Names are not case sensitive, like SQL
+	 * Server identifiers with the default collation, but the factory is given the name as it was first requested.
+	 */
+	public DataFieldMaxValueIncrementer getIncrementer(String sequenceName) {
+		// Locale.ROOT, so that "i" maps to the same key whatever the default locale ("İ" in a Turkish one).
+		return this.incrementers.computeIfAbsent(sequenceName.toUpperCase(Locale.ROOT), key -> this.factory.apply(sequenceName));
+	}
+
+	/**
+	 * Return the incrementers created so far.
+	 */
+	public Collection<DataFieldMaxValueIncrementer> getIncrementers() {
+		return Collections.unmodifiableCollection(this.incrementers.values());
+	}
+}
@@ -5,12 +5,17 @@ import javax.sql.DataSource;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @SpringBootApplication
 @EnableTransactionManagement
 public class JdbcSqlserverIncrementerApplication {
@@ -35,8 +40,42 @@ public class JdbcSqlserverIncrementerApplication {
         return executor;
     }	
 
+    @Bean(destroyMethod="shutdown")
+    public ThreadPoolTaskExecutor incrementerPrefetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setDaemon(true);
+        executor.setThreadNamePrefix("IncrementerPrefetch-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler incrementerReaperScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setDaemon(true);
+        scheduler.setThreadNamePrefix("IncrementerReaper-");
+        return scheduler;
+    }
+
+    // Hand this to Spring Batch's JobRepositoryFactoryBean so the job repository shares the cached incrementers.
+    @Bean
+    public SqlServerIncrementerFactory incrementerFactory(IncrementMeDaoImpl incrementMeDao) {
+        return new SqlServerIncrementerFactory(incrementMeDao.getIncrementerRegistry());
+    }
+
+    // Serves cached values without the transaction interceptor, see FastPathIncrementMeDao.
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "example", name = "fast-path", havingValue = "true")
+    public FastPathIncrementMeDao fastPathIncrementMeDao(IncrementMeDaoImpl incrementMeDao) {
+        return new FastPathIncrementMeDao(incrementMeDao);
+    }
+
     @Bean
-    public StressRunner stressRunner(DataSource dataSource, IncrementMeDao incrementDao) {
-    	return new StressRunner(taskExecutor(), incrementDao);
+    public StressRunner stressRunner(DataSource dataSource, IncrementMeDao incrementDao, MeterRegistry meterRegistry) {
+    	return new StressRunner(taskExecutor(), incrementDao, meterRegistry);
     }
 }
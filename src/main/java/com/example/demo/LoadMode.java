@@ -0,0 +1,21 @@
+package com.example.demo;
+
+/**
+ * How {@link StressRunner} generates load.
+ *
+ * @author Tyler Van Gorder
+ */
+public enum LoadMode {
+
+	/**
+	 * A fixed number of threads each call the incrementer a fixed number of times, back to back. A slow call delays
+	 * the calls behind it, so stalls show up as lower throughput rather than as latency.
+	 */
+	CLOSED_LOOP,
+
+	/**
+	 * Calls are issued at a target rate regardless of how long earlier calls take, and latency is measured from the
+	 * time each call was supposed to start. Stalls show up as latency, which avoids coordinated omission.
+	 */
+	OPEN_LOOP;
+}
@@ -0,0 +1,273 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A memory-mapped file on the local host where a process parks the values left in its {@link IdBlockCache} when it
+ * shuts down, so that the next process on the same host serves them instead of reserving a new block from the
+ * database.
+ *
+ * <p>{@link #claim()} takes every parked value and clears the journal. Both parking and claiming happen under an
+ * exclusive {@link FileLock} and are forced to disk before the lock is released, so two processes never claim the
+ * same values. A process only parks values that it has drained from its cache and will not serve anymore, and while
+ * it runs, the values it holds are not in the journal at all. A process that crashes therefore loses its cached
+ * values, like it always did, but never leaves behind values that it may already have served.
+ *
+ * <p>The ranges are written before the header that counts them, so a process that dies while parking leaves the
+ * journal as it was. Every journal has a key, typically the database, the strategy and the sequence, and values
+ * parked under another key are never claimed.
+ *
+ * @author Tyler Van Gorder
+ */
+public class LocalRangeJournal implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalRangeJournal.class);
+
+	private static final int MAGIC = 0x49444A31;
+
+	private static final int MAGIC_OFFSET = 0;
+
+	private static final int COUNT_OFFSET = 4;
+
+	private static final int PARKED_AT_OFFSET = 8;
+
+	private static final int KEY_LENGTH_OFFSET = 16;
+
+	private static final int KEY_OFFSET = 20;
+
+	private static final int MAX_KEY_LENGTH = 492;
+
+	private static final int RANGES_OFFSET = KEY_OFFSET + MAX_KEY_LENGTH;
+
+	/** first (long), step (long) and count (int) */
+	private static final int RANGE_LENGTH = 20;
+
+	// A file lock is held by the whole JVM, so the journals on the same file in one JVM take turns on this monitor.
+	private static final ConcurrentMap<Path, Object> monitors = new ConcurrentHashMap<>();
+
+	private final Path path;
+
+	private final byte[] key;
+
+	private final int maxRanges;
+
+	private final Object monitor;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Open the journal with room for 1024 ranges, creating the file if it does not exist yet.
+	 * @param path the journal file
+	 * @param key identifies the values of the journal, only values parked with the same key are claimed
+	 */
+	public LocalRangeJournal(Path path, String key) throws IOException {
+		this(path, key, 1024);
+	}
+
+	/**
+	 * Open the journal, creating the file if it does not exist yet.
+	 * @param path the journal file
+	 * @param key identifies the values of the journal, only values parked with the same key are claimed
+	 * @param maxRanges the number of ranges the journal has room for, values beyond that are not parked
+	 */
+	public LocalRangeJournal(Path path, String key, int maxRanges) throws IOException {
+		this.key = key.getBytes(StandardCharsets.UTF_8);
+		if (this.key.length > MAX_KEY_LENGTH) {
+			throw new IllegalArgumentException("The key of a journal must not be longer than " + MAX_KEY_LENGTH + " bytes");
+		}
+		this.path = path.toAbsolutePath().normalize();
+		this.maxRanges = maxRanges;
+		this.monitor = monitors.computeIfAbsent(this.path, p -> new Object());
+		if (this.path.getParent() != null) {
+			Files.createDirectories(this.path.getParent());
+		}
+		this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, RANGES_OFFSET + (long) maxRanges * RANGE_LENGTH);
+	}
+
+	public Path getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Park the given values, after the ones already parked under the same key. Values parked under another key are
+	 * replaced.
+	 * @return the number of values parked, less than the number of values given if the journal ran out of room
+	 */
+	public long park(List<Range> ranges) throws IOException {
+		if (ranges.isEmpty()) {
+			return 0;
+		}
+		synchronized (this.monitor) {
+			try (FileLock lock = this.channel.lock()) {
+				int existing = parkedRangeCount();
+				if (existing > 0 && !hasOwnKey()) {
+					logger.warn("Replacing the values parked under another key in {}", this.path);
+					this.buffer.putInt(COUNT_OFFSET, 0);
+					this.buffer.force();
+					existing = 0;
+				}
+				int count = Math.min(ranges.size(), this.maxRanges - existing);
+				long parked = 0;
+				for (int i = 0; i < count; i++) {
+					Range range = ranges.get(i);
+					int offset = RANGES_OFFSET + (existing + i) * RANGE_LENGTH;
+					this.buffer.putLong(offset, range.getFirst());
+					this.buffer.putLong(offset + 8, range.getStep());
+					this.buffer.putInt(offset + 16, range.getCount());
+					parked += range.getCount();
+				}
+				if (existing == 0) {
+					this.buffer.putInt(MAGIC_OFFSET, MAGIC);
+					this.buffer.putInt(KEY_LENGTH_OFFSET, this.key.length);
+					for (int i = 0; i < this.key.length; i++) {
+						this.buffer.put(KEY_OFFSET + i, this.key[i]);
+					}
+				}
+				this.buffer.force();
+				// Only now do the new ranges count as parked.
+				this.buffer.putLong(PARKED_AT_OFFSET, System.currentTimeMillis());
+				this.buffer.putInt(COUNT_OFFSET, existing + count);
+				this.buffer.force();
+				return parked;
+			}
+		}
+	}
+
+	/**
+	 * Take every value parked under the key of this journal, the journal is empty afterwards.
+	 * @return the parked ranges, in the order they were parked, or an empty list if there are none
+	 */
+	public List<Range> claim() throws IOException {
+		// Without the lock this is only a hint, but it saves taking the lock on every refill of an empty journal.
+		if (this.buffer.getInt(COUNT_OFFSET) == 0) {
+			return Collections.emptyList();
+		}
+		synchronized (this.monitor) {
+			try (FileLock lock = this.channel.lock()) {
+				int count = parkedRangeCount();
+				if (count == 0 || !hasOwnKey()) {
+					return Collections.emptyList();
+				}
+				List<Range> ranges = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					int offset = RANGES_OFFSET + i * RANGE_LENGTH;
+					ranges.add(new Range(this.buffer.getLong(offset), this.buffer.getLong(offset + 8), this.buffer.getInt(offset + 16)));
+				}
+				// The values must be gone from the journal before any of them is served.
+				this.buffer.putInt(COUNT_OFFSET, 0);
+				this.buffer.force();
+				return ranges;
+			}
+		}
+	}
+
+	private int parkedRangeCount() {
+		if (this.buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+			return 0;
+		}
+		int count = this.buffer.getInt(COUNT_OFFSET);
+		if (count < 0 || count > this.maxRanges) {
+			logger.warn("Ignoring the {} ranges parked in {}, the journal has room for {}", count, this.path, this.maxRanges);
+			return 0;
+		}
+		return count;
+	}
+
+	private boolean hasOwnKey() {
+		int length = this.buffer.getInt(KEY_LENGTH_OFFSET);
+		if (length != this.key.length) {
+			return false;
+		}
+		byte[] parkedKey = new byte[length];
+		for (int i = 0; i < length; i++) {
+			parkedKey[i] = this.buffer.get(KEY_OFFSET + i);
+		}
+		return Arrays.equals(parkedKey, this.key);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Return the values of the block from the given index on as ranges, consecutive values the same distance apart
+	 * share a range. A range block is a single range, the values of an array block are typically a few ranges.
+	 */
+	public static List<Range> ranges(IdBlock block, int fromIndex) {
+		List<Range> ranges = new ArrayList<>();
+		int index = fromIndex;
+		while (index < block.size()) {
+			long first = block.valueAt(index);
+			long step = 1;
+			int count = 1;
+			if (index + 1 < block.size()) {
+				step = block.valueAt(index + 1) - first;
+				count = 2;
+				while (index + count < block.size() && block.valueAt(index + count) - block.valueAt(index + count - 1) == step) {
+					count++;
+				}
+			}
+			ranges.add(new Range(first, step, count));
+			index += count;
+		}
+		return ranges;
+	}
+
+	/**
+	 * {@code count} values starting at {@code first}, each value {@code step} apart.
+	 */
+	public static final class Range {
+
+		private final long first;
+		private final long step;
+		private final int count;
+
+		public Range(long first, long step, int count) {
+			this.first = first;
+			this.step = step;
+			this.count = count;
+		}
+
+		public long getFirst() {
+			return this.first;
+		}
+
+		public long getStep() {
+			return this.step;
+		}
+
+		public int getCount() {
+			return this.count;
+		}
+
+		public IdBlock toBlock() {
+			return IdBlock.range(this.first, this.step, this.count);
+		}
+
+		@Override
+		public String toString() {
+			return this.count + " values from " + this.first + " step " + this.step;
+		}
+	}
+}
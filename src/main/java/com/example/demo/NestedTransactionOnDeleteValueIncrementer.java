@@ -1,37 +1,37 @@
 package com.example.demo;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.sql.DataSource;
 
-import org.springframework.dao.DataAccessException;
-import org.springframework.dao.DataAccessResourceFailureException;
-import org.springframework.jdbc.datasource.DataSourceUtils;
-import org.springframework.jdbc.support.JdbcUtils;
-import org.springframework.jdbc.support.incrementer.AbstractColumnMaxValueIncrementer;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * This incrementer insures the delete is run in a new transaction to prevent deadlocks.
+ *
+ * <p>If a {@link RangeDeleteQueue} is set, the consumed values are queued instead and deleted in the background,
+ * merged into range deletes, so a refill no longer runs a nested transaction on a second connection. A block inserted
+ * within the caller's transaction is only queued once that transaction commits, so the delete never waits for the
+ * caller, and a block that is rolled back has no rows to delete.
  * 
  * @author tyler.vangorder
  */
-public class NestedTransactionOnDeleteValueIncrementer extends  AbstractColumnMaxValueIncrementer {
+public class NestedTransactionOnDeleteValueIncrementer extends AbstractSqlServerTableMaxValueIncrementer implements ReapingIncrementer {
 
 	private TransactionTemplate transactionTemplate;
-	 
-	/** The current cache of values */
-	private long[] valueCache;
 
-	/** The next id to serve from the value cache */
-	private int nextValueIndex = -1;
+	private RangeDeleteQueue deleteQueue;
+
+	private final LongAdder reaperRunCount = new LongAdder();
+	private final LongAdder reapedRowCount = new LongAdder();
 
 	/**
 	 * Default constructor for bean property style usage.
@@ -54,67 +54,62 @@ public class NestedTransactionOnDeleteValueIncrementer extends  AbstractColumnMa
 		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 	}
 
-	protected String getIncrementStatement() {
-		return "insert into " + getIncrementerName() + " default values";
-	}
-
-	protected String getIdentityStatement() {
-		return "select @@identity";
+	/**
+	 * Set the queue the consumed values are handed to instead of deleting them in a nested transaction.
+	 */
+	public void setDeleteQueue(RangeDeleteQueue deleteQueue) {
+		this.deleteQueue = deleteQueue;
 	}
 
-	
 	@Override
-	protected synchronized long getNextKey() throws DataAccessException {
-		if (this.nextValueIndex < 0 || this.nextValueIndex >= getCacheSize()) {
-			/*
-			* Need to use straight JDBC code because we need to make sure that the insert and select
-			* are performed on the same connection (otherwise we can't be sure that @@identity
-			* returns the correct value)
-			*/
-			Connection con = DataSourceUtils.getConnection(getDataSource());
-			Statement stmt = null;
-			try {
-				stmt = con.createStatement();
-				DataSourceUtils.applyTransactionTimeout(stmt, getDataSource());
-				this.valueCache = new long[getCacheSize()];
-				this.nextValueIndex = 0;
-				for (int i = 0; i < getCacheSize(); i++) {
-					stmt.executeUpdate(getIncrementStatement());
-					ResultSet rs = stmt.executeQuery(getIdentityStatement());
-					try {
-						if (!rs.next()) {
-							throw new DataAccessResourceFailureException("Identity statement failed after inserting");
-						}
-						this.valueCache[i] = rs.getLong(1);
-					}
-					finally {
-						JdbcUtils.closeResultSet(rs);
-					}
-				}
-				final long[] values = this.valueCache;
-				final Statement statement = stmt;
-				transactionTemplate.execute(new TransactionCallbackWithoutResult() {
-					
+	protected void valuesReserved(final Statement statement, final long[] values) {
+		if (deleteQueue != null) {
+			if (!isRefillOutsideTransaction() && TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
 					@Override
-					protected void doInTransactionWithoutResult(TransactionStatus status) {
-						// TODO Auto-generated method stub
-						try {
-							statement.executeUpdate(getDeleteStatement(values));
-						} catch (SQLException e) {
-							status.setRollbackOnly();
-						}
+					public void afterCommit() {
+						deleteQueue.add(values);
 					}
 				});
 			}
-			catch (SQLException ex) {
-				throw new DataAccessResourceFailureException("Could not increment identity", ex);
+			else {
+				deleteQueue.add(values);
 			}
-			finally {
-				JdbcUtils.closeStatement(stmt);
-				DataSourceUtils.releaseConnection(con, getDataSource());
+			return;
+		}
+		if (isRefillOutsideTransaction()) {
+			// The refill connection commits on its own, a nested transaction would only take another connection.
+			try {
+				reapedRowCount.add(statement.executeUpdate(getDeleteStatement(values)));
+				reaperRunCount.increment();
+			} catch (SQLException e) {
+				// Like the nested transaction, a failed delete only leaves the rows for the next refill.
 			}
+			return;
 		}
-		return this.valueCache[this.nextValueIndex++];
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				try {
+					reapedRowCount.add(statement.executeUpdate(getDeleteStatement(values)));
+					reaperRunCount.increment();
+				} catch (SQLException e) {
+					status.setRollbackOnly();
+				}
+			}
+		});
+	}
+
+	@Override
+	public long getReaperRunCount() {
+		return reaperRunCount.sum() + (deleteQueue != null ? deleteQueue.getRunCount() : 0);
+	}
+
+	@Override
+	public long getReapedRowCount() {
+		return reapedRowCount.sum() + (deleteQueue != null ? deleteQueue.getRowCount() : 0);
 	}
 
 	protected String getDeleteStatement(long[] values) {
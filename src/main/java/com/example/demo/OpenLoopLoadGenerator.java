@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Issues {@link IncrementMeDao#getNextLongValue()} calls at a fixed rate for a fixed duration and measures the latency
+ * of each call from its intended start time.
+ *
+ * <p>A single dispatcher thread (the caller) computes the intended start time of every call and hands the call to the
+ * task executor once that time is reached, without waiting for earlier calls to complete. If the incrementer stalls,
+ * the calls queue up in the executor and the time they spend queued is part of their latency.
+ *
+ * @author Tyler Van Gorder
+ */
+public class OpenLoopLoadGenerator {
+
+	private final TaskExecutor taskExecutor;
+	private final IncrementMeDao incrementMeDao;
+
+	public OpenLoopLoadGenerator(TaskExecutor taskExecutor, IncrementMeDao incrementMeDao) {
+		this.taskExecutor = taskExecutor;
+		this.incrementMeDao = incrementMeDao;
+	}
+
+	/**
+	 * Run calls at the given rate for the given duration and wait for all of them to complete.
+	 * @param strategy the name of the strategy, used in the report
+	 * @param ratePerSecond the number of calls to start per second
+	 * @param duration how long to issue calls
+	 */
+	public StressReport run(String strategy, double ratePerSecond, Duration duration) throws InterruptedException {
+		long intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+		int count = (int) Math.max(1, duration.toNanos() / intervalNanos);
+		CountDownLatch done = new CountDownLatch(count);
+		int expectedCallsPerThread = expectedCallsPerThread(count);
+		// One recorder per executor thread, a recorder is only ever used by the thread it belongs to.
+		Map<Thread, StressRecorder> recorders = new ConcurrentHashMap<>();
+
+		long start = System.nanoTime();
+		for (int index = 0; index < count; index++) {
+			long intendedStart = start + index * intervalNanos;
+			long wait;
+			while ((wait = intendedStart - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			taskExecutor.execute(() -> {
+				StressRecorder recorder = recorders.computeIfAbsent(Thread.currentThread(), thread -> new StressRecorder(expectedCallsPerThread));
+				try {
+					long value = incrementMeDao.getNextLongValue();
+					recorder.success(value, System.nanoTime() - intendedStart);
+				} catch (Exception e) {
+					recorder.failure(e);
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		return new StressReport(strategy, LoadMode.OPEN_LOOP, ratePerSecond, new ArrayList<>(recorders.values()), System.nanoTime() - start);
+	}
+
+	/**
+	 * Return the number of calls a recorder is sized for: an even share of the calls across the threads of the
+	 * executor, with a quarter of headroom. A recorder that records more calls grows its arrays.
+	 */
+	private int expectedCallsPerThread(int count) {
+		int threads = 1;
+		if (this.taskExecutor instanceof ThreadPoolTaskExecutor) {
+			threads = ((ThreadPoolTaskExecutor) this.taskExecutor).getMaxPoolSize();
+		}
+		else if (this.taskExecutor instanceof ConcurrentTaskExecutor
+				&& ((ConcurrentTaskExecutor) this.taskExecutor).getConcurrentExecutor() instanceof ThreadPoolExecutor) {
+			threads = ((ThreadPoolExecutor) ((ConcurrentTaskExecutor) this.taskExecutor).getConcurrentExecutor()).getMaximumPoolSize();
+		}
+		threads = Math.max(1, threads);
+		return (int) Math.min(count, count * 5L / (4L * threads) + 1);
+	}
+}
@@ -0,0 +1,304 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Collects the values consumed from an identity table and deletes them in the background, merged into as few range
+ * deletes as possible:
+ *
+ * <pre class="code">delete from EXAMPLE_SEQ with (rowlock, readpast) where id between 1 and 999
+ * delete from EXAMPLE_SEQ with (rowlock, readpast) where id between 1201 and 1999</pre>
+ *
+ * <p>{@link #add(long[])} only splits the values of a block into contiguous ranges and puts them on a queue, so the
+ * caller pays neither a second transaction nor a second connection. Only add values whose rows are committed, a
+ * delete never waits for the transaction that inserted them. Every "interval" a worker on the {@link TaskScheduler}
+ * drains the queue, merges adjacent ranges and deletes them on its own connection, outside of any transaction. A
+ * range longer than "maxRowsPerDelete" is split so that no statement locks enough rows for SQL Server to escalate to
+ * a table lock.
+ *
+ * <p>The deletes skip rows locked by other sessions instead of waiting for them and give up after
+ * "queryTimeoutSeconds". A range that came back short, or that could not be deleted, is retried on the next run, up
+ * to {@value #MAX_ATTEMPTS} times.
+ *
+ * <p>The most recent value added is held back until the next block arrives, so the newest row of the table, which
+ * holds the current identity value, is never deleted.
+ *
+ * @author Tyler Van Gorder
+ */
+public class RangeDeleteQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(RangeDeleteQueue.class);
+
+	private static final int MAX_ATTEMPTS = 10;
+
+	private final DataSource dataSource;
+
+	private final String tableName;
+
+	private final String columnName;
+
+	private final TaskScheduler scheduler;
+
+	private int maxRowsPerDelete = 1000;
+
+	private int queryTimeoutSeconds = 5;
+
+	/** The ranges waiting to be deleted, each one a {first, last} pair */
+	private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+
+	/** The ranges to delete again, each one a {first, last, attempts} triple, guarded by the flush monitor */
+	private final Queue<long[]> retries = new ConcurrentLinkedQueue<>();
+
+	// Not this, so that adding values never waits for a delete.
+	private final Object flushMonitor = new Object();
+
+	/** The most recent value added, guarded by this */
+	private long heldBack = -1;
+
+	private ScheduledFuture<?> worker;
+
+	private final LongAdder runCount = new LongAdder();
+
+	private final LongAdder rowCount = new LongAdder();
+
+	/**
+	 * @param dataSource the DataSource to delete from
+	 * @param tableName the name of the identity table
+	 * @param columnName the name of the identity column
+	 * @param scheduler the scheduler that runs the worker
+	 */
+	public RangeDeleteQueue(DataSource dataSource, String tableName, String columnName, TaskScheduler scheduler) {
+		this.dataSource = dataSource;
+		this.tableName = tableName;
+		this.columnName = columnName;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Set the maximum number of rows a single delete statement may cover, defaults to 1000.
+	 */
+	public void setMaxRowsPerDelete(int maxRowsPerDelete) {
+		if (maxRowsPerDelete < 1) {
+			throw new IllegalArgumentException("Property 'maxRowsPerDelete' must be at least 1");
+		}
+		this.maxRowsPerDelete = maxRowsPerDelete;
+	}
+
+	/**
+	 * Set the query timeout of each delete statement in seconds, defaults to 5.
+	 */
+	public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+	}
+
+	/**
+	 * Start deleting the queued ranges every {@code interval}.
+	 */
+	public synchronized void start(Duration interval) {
+		if (this.worker == null) {
+			this.worker = this.scheduler.scheduleWithFixedDelay(this::flush, interval.toMillis());
+		}
+	}
+
+	/**
+	 * Stop the worker and delete the ranges still queued.
+	 */
+	public void stop() {
+		synchronized (this) {
+			if (this.worker != null) {
+				this.worker.cancel(false);
+				this.worker = null;
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * Queue the values of a block once its rows are committed, the values must be sorted. Blocks committed by
+	 * different transactions may be added out of order.
+	 */
+	public synchronized void add(long[] values) {
+		if (values.length == 0) {
+			return;
+		}
+		if (values[values.length - 1] < this.heldBack) {
+			// A block older than the value held back, none of its values is the newest row.
+			addRanges(values, 0, values.length);
+			return;
+		}
+		long first = (this.heldBack >= 0 ? this.heldBack : values[0]);
+		long previous = first;
+		int end = values.length - 1;
+		for (int i = (this.heldBack >= 0 ? 0 : 1); i < end; i++) {
+			if (values[i] != previous + 1) {
+				this.pending.add(new long[] { first, previous });
+				first = values[i];
+			}
+			previous = values[i];
+		}
+		if (this.heldBack >= 0 || end > 0) {
+			this.pending.add(new long[] { first, previous });
+		}
+		this.heldBack = values[end];
+	}
+
+	private void addRanges(long[] values, int from, int to) {
+		long first = values[from];
+		for (int i = from + 1; i < to; i++) {
+			if (values[i] != values[i - 1] + 1) {
+				this.pending.add(new long[] { first, values[i - 1] });
+				first = values[i];
+			}
+		}
+		this.pending.add(new long[] { first, values[to - 1] });
+	}
+
+	/**
+	 * Delete every range on the queue, merged into as few statements as possible, and retry the ranges that came
+	 * back short on the previous run.
+	 */
+	public void flush() {
+		synchronized (this.flushMonitor) {
+			flushRanges();
+		}
+	}
+
+	private void flushRanges() {
+		List<long[]> ranges = new ArrayList<>();
+		for (long[] range = this.pending.poll(); range != null; range = this.pending.poll()) {
+			ranges.add(range);
+		}
+		List<long[]> work = new ArrayList<>();
+		for (long[] range : merge(ranges)) {
+			work.add(new long[] { range[0], range[1], 0 });
+		}
+		for (long[] range = this.retries.poll(); range != null; range = this.retries.poll()) {
+			work.add(range);
+		}
+		if (work.isEmpty()) {
+			return;
+		}
+		long deleted = delete(work);
+		if (deleted > 0) {
+			this.rowCount.add(deleted);
+			this.runCount.increment();
+		}
+	}
+
+	/**
+	 * Sort the ranges and merge those that overlap or touch, then split the result into ranges of at most
+	 * "maxRowsPerDelete" values.
+	 */
+	List<long[]> merge(List<long[]> ranges) {
+		ranges.sort(Comparator.comparingLong(range -> range[0]));
+		List<long[]> merged = new ArrayList<>();
+		long[] current = null;
+		for (long[] range : ranges) {
+			if (current != null && range[0] <= current[1] + 1) {
+				current[1] = Math.max(current[1], range[1]);
+			}
+			else {
+				current = new long[] { range[0], range[1] };
+				merged.add(current);
+			}
+		}
+		List<long[]> bounded = new ArrayList<>(merged.size());
+		for (long[] range : merged) {
+			for (long first = range[0]; first <= range[1]; first += this.maxRowsPerDelete) {
+				bounded.add(new long[] { first, Math.min(range[1], first + this.maxRowsPerDelete - 1) });
+			}
+		}
+		return bounded;
+	}
+
+	// Deletes each {first, last, attempts} range, those that skipped locked rows or failed are retried on the next run.
+	private long delete(List<long[]> ranges) {
+		Connection con = null;
+		Statement stmt = null;
+		long deleted = 0;
+		int index = 0;
+		try {
+			con = DataSourceUtils.getConnection(this.dataSource);
+			stmt = con.createStatement();
+			stmt.setQueryTimeout(this.queryTimeoutSeconds);
+			for (; index < ranges.size(); index++) {
+				long[] range = ranges.get(index);
+				int count = stmt.executeUpdate(getDeleteStatement(range[0], range[1]));
+				deleted += count;
+				if (count < range[1] - range[0] + 1) {
+					retry(range);
+				}
+			}
+		}
+		catch (SQLException | DataAccessResourceFailureException ex) {
+			logger.warn("Could not delete consumed identity values from {}, retrying on the next run", this.tableName, ex);
+			for (; index < ranges.size(); index++) {
+				retry(ranges.get(index));
+			}
+		}
+		finally {
+			JdbcUtils.closeStatement(stmt);
+			DataSourceUtils.releaseConnection(con, this.dataSource);
+		}
+		return deleted;
+	}
+
+	private void retry(long[] range) {
+		if (range[2] + 1 < MAX_ATTEMPTS) {
+			this.retries.add(new long[] { range[0], range[1], range[2] + 1 });
+		}
+		else {
+			// The rows are gone or stayed locked all along, they are left in the table.
+			logger.debug("Giving up on deleting the values from {} to {} of {}", range[0], range[1], this.tableName);
+		}
+	}
+
+	/**
+	 * Return the statement that deletes the values from {@code first} to {@code last}, skipping the rows locked by
+	 * other sessions.
+	 */
+	protected String getDeleteStatement(long first, long last) {
+		return "delete from " + this.tableName + " with (rowlock, readpast) where " + this.columnName + " between " + first
+				+ " and " + last;
+	}
+
+	/**
+	 * Return the number of ranges waiting to be deleted, including those to be retried.
+	 */
+	public int getPendingCount() {
+		return this.pending.size() + this.retries.size();
+	}
+
+	/**
+	 * Return the number of runs of the worker that deleted rows.
+	 */
+	public long getRunCount() {
+		return this.runCount.sum();
+	}
+
+	/**
+	 * Return the total number of rows deleted.
+	 */
+	public long getRowCount() {
+		return this.rowCount.sum();
+	}
+}
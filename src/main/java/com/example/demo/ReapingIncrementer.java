@@ -0,0 +1,22 @@
+package com.example.demo;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link DataFieldMaxValueIncrementer} that deletes used rows from its sequence table and keeps track of how often
+ * it did so.
+ *
+ * @author Tyler Van Gorder
+ */
+public interface ReapingIncrementer extends DataFieldMaxValueIncrementer {
+
+	/**
+	 * Return the number of times rows were deleted from the sequence table.
+	 */
+	long getReaperRunCount();
+
+	/**
+	 * Return the total number of rows deleted from the sequence table.
+	 */
+	long getReapedRowCount();
+}
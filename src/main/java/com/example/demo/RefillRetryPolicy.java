@@ -0,0 +1,170 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Retries a refill that failed because SQL Server chose it as a deadlock victim (error 1205) or because a lock
+ * request timed out (error 1222), with a bounded, jittered exponential backoff.
+ *
+ * <p>The n-th retry waits a random time between half and all of {@code initialBackoff * 2^(n-1)}, capped at
+ * "maxBackoff", so the processes that lost the same deadlock do not collide again on their next attempt. After
+ * "maxRetries" retries the last failure is passed on.
+ *
+ * <p>SQL Server rolls back the whole transaction of a deadlock victim. A refill that runs within the caller's
+ * transaction is therefore not retried after a deadlock, the failure is passed on so that the caller can retry the
+ * transaction as a whole. Refills on a prefetch or async thread, made outside of any transaction, or that the caller
+ * declares to run on a connection of their own, such as a refill pool, are retried. A lock timeout only aborts the
+ * statement, so it is always retried.
+ *
+ * <p>Every retry is counted and timed, from the start of its backoff to the end of its attempt. The deadlocks and
+ * lock timeouts seen are counted whether they were retried or not.
+ *
+ * @author Tyler Van Gorder
+ */
+public class RefillRetryPolicy {
+
+	private static final Logger logger = LoggerFactory.getLogger(RefillRetryPolicy.class);
+
+	private int maxRetries = 3;
+
+	private Duration initialBackoff = Duration.ofMillis(10);
+
+	private Duration maxBackoff = Duration.ofMillis(500);
+
+	private final LongAdder retryCount = new LongAdder();
+
+	private final LongAdder retryNanos = new LongAdder();
+
+	private final LongAdder exhaustedCount = new LongAdder();
+
+	private final LongAdder deadlockVictimCount = new LongAdder();
+
+	private final LongAdder lockTimeoutCount = new LongAdder();
+
+	/**
+	 * Set the maximum number of retries of a refill, defaults to 3.
+	 */
+	public void setMaxRetries(int maxRetries) {
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("Property 'maxRetries' must not be negative");
+		}
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Set the backoff ceiling of the first retry, defaults to 10 milliseconds.
+	 */
+	public void setInitialBackoff(Duration initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * Set the longest backoff of any retry, defaults to 500 milliseconds.
+	 */
+	public void setMaxBackoff(Duration maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Run the refill, retrying it while it fails with a retryable error. The refill is assumed to run within the
+	 * caller's transaction, if there is one.
+	 */
+	public <T> T execute(Supplier<T> refill) {
+		return execute(refill, false);
+	}
+
+	/**
+	 * Run the refill, retrying it while it fails with a retryable error.
+	 * @param outsideTransaction whether the refill runs on a connection of its own and commits it, never on the
+	 * connection of the caller's transaction, so a deadlock rolls back nothing but the refill
+	 */
+	public <T> T execute(Supplier<T> refill, boolean outsideTransaction) {
+		for (int retry = 0; ; retry++) {
+			long start = System.nanoTime();
+			if (retry > 0) {
+				LockSupport.parkNanos(backoffNanos(retry));
+			}
+			try {
+				return refill.get();
+			}
+			catch (RuntimeException ex) {
+				FailureCause cause = FailureCause.of(ex);
+				if (!isRetryable(cause, outsideTransaction)) {
+					throw ex;
+				}
+				if (retry == this.maxRetries) {
+					this.exhaustedCount.increment();
+					throw ex;
+				}
+				logger.debug("Refill failed with {}, retry {} of {}", cause, retry + 1, this.maxRetries);
+			}
+			finally {
+				if (retry > 0) {
+					this.retryCount.increment();
+					this.retryNanos.add(System.nanoTime() - start);
+				}
+			}
+		}
+	}
+
+	private boolean isRetryable(FailureCause cause, boolean outsideTransaction) {
+		switch (cause) {
+			case DEADLOCK_VICTIM :
+				this.deadlockVictimCount.increment();
+				return (outsideTransaction || !TransactionSynchronizationManager.isActualTransactionActive());
+			case LOCK_TIMEOUT :
+				this.lockTimeoutCount.increment();
+				return true;
+			default :
+				return false;
+		}
+	}
+
+	long backoffNanos(int retry) {
+		long ceiling = Math.min(this.maxBackoff.toNanos(), this.initialBackoff.toNanos() << Math.min(retry - 1, 30));
+		return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+	}
+
+	/**
+	 * Return the number of retries.
+	 */
+	public long getRetryCount() {
+		return this.retryCount.sum();
+	}
+
+	/**
+	 * Return the total time spent in retries, backoff included.
+	 */
+	public long getRetryNanos() {
+		return this.retryNanos.sum();
+	}
+
+	/**
+	 * Return the number of refills that still failed after the last retry.
+	 */
+	public long getExhaustedCount() {
+		return this.exhaustedCount.sum();
+	}
+
+	/**
+	 * Return the number of refills chosen as deadlock victims, retried or not.
+	 */
+	public long getDeadlockVictimCount() {
+		return this.deadlockVictimCount.sum();
+	}
+
+	/**
+	 * Return the number of refills that failed on a lock timeout.
+	 */
+	public long getLockTimeoutCount() {
+		return this.lockTimeoutCount.sum();
+	}
+}
@@ -0,0 +1,233 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Deletes used rows from an identity table in bounded chunks on a shared {@link TaskScheduler}.
+ *
+ * <p>Only rows below a watermark are deleted, the watermark being the lowest value of the most recent block reserved
+ * by the incrementer. This keeps the reaper away from the end of the table, where every process inserts its new rows.
+ * Each statement deletes at most "batchSize" rows with row locks and skips rows locked by other transactions:
+ *
+ * <pre class="code">delete top (1000) from EXAMPLE_SEQ with (rowlock, readpast) where id &lt; 123456</pre>
+ *
+ * With the default batch size of 1000 the number of row locks stays well below the 5000 at which SQL Server attempts
+ * to escalate to a table lock. Chunks are deleted back to back until a chunk comes back short, then the reaper waits
+ * for the next interval.
+ *
+ * <p>If a chunk fails because of contention (deadlock victim, lock or query timeout), the interval is doubled for
+ * every consecutive failure up to "maxBackoff" and reset after the next successful pass.
+ *
+ * <p>The reaper never runs on a caller's thread: {@link #advanceWatermark(long)} only records the new watermark and
+ * the deletes happen on the scheduler, on their own connection and outside of any transaction.
+ *
+ * @author Tyler Van Gorder
+ */
+public class ScheduledIdentityReaper {
+
+	private static final Logger logger = LoggerFactory.getLogger(ScheduledIdentityReaper.class);
+
+	private final DataSource dataSource;
+
+	private final String tableName;
+
+	private final String columnName;
+
+	private final TaskScheduler scheduler;
+
+	private int batchSize = 1000;
+
+	private Duration interval = Duration.ofSeconds(20);
+
+	private Duration maxBackoff = Duration.ofMinutes(5);
+
+	private int queryTimeoutSeconds = 5;
+
+	/** Rows with a value below the watermark can be deleted, -1 until the first block is reserved */
+	private volatile long watermark = -1;
+
+	/** The watermark of the last completed pass */
+	private long reapedWatermark = -1;
+
+	private int consecutiveFailures;
+
+	private ScheduledFuture<?> nextPass;
+
+	private boolean stopped;
+
+	private final LongAdder runCount = new LongAdder();
+
+	private final LongAdder rowCount = new LongAdder();
+
+	private final LongAdder backoffCount = new LongAdder();
+
+	/**
+	 * @param dataSource the DataSource to delete from
+	 * @param tableName the name of the identity table
+	 * @param columnName the name of the identity column
+	 * @param scheduler the scheduler that runs the deletes, typically shared by all reapers
+	 */
+	public ScheduledIdentityReaper(DataSource dataSource, String tableName, String columnName, TaskScheduler scheduler) {
+		this.dataSource = dataSource;
+		this.tableName = tableName;
+		this.columnName = columnName;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Set the maximum number of rows deleted by one statement, defaults to 1000.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Property 'batchSize' must be at least 1");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the time between two passes of the reaper, defaults to 20 seconds.
+	 */
+	public void setInterval(Duration interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Set the longest time the reaper waits between two passes while it backs off, defaults to 5 minutes.
+	 */
+	public void setMaxBackoff(Duration maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Set the query timeout of each delete statement in seconds, defaults to 5.
+	 */
+	public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+	}
+
+	/**
+	 * Allow the rows below the given value to be deleted. The first call schedules the first pass of the reaper.
+	 */
+	public void advanceWatermark(long watermark) {
+		if (watermark <= this.watermark) {
+			return;
+		}
+		boolean first = (this.watermark < 0);
+		this.watermark = watermark;
+		if (first) {
+			schedule(this.interval);
+		}
+	}
+
+	private synchronized void schedule(Duration delay) {
+		if (!this.stopped) {
+			this.nextPass = this.scheduler.schedule(this::reap, new Date(System.currentTimeMillis() + delay.toMillis()));
+		}
+	}
+
+	/**
+	 * Cancel the next pass of the reaper. Rows left in the table are deleted by the next process that reaps it.
+	 */
+	public synchronized void stop() {
+		this.stopped = true;
+		if (this.nextPass != null) {
+			this.nextPass.cancel(false);
+		}
+	}
+
+	/**
+	 * Run one pass of the reaper: delete chunks below the current watermark until a chunk comes back short.
+	 */
+	void reap() {
+		long currentWatermark = this.watermark;
+		try {
+			if (currentWatermark > this.reapedWatermark) {
+				this.runCount.increment();
+				int deleted;
+				do {
+					deleted = deleteChunk(currentWatermark);
+					this.rowCount.add(deleted);
+				}
+				while (deleted == this.batchSize);
+				this.reapedWatermark = currentWatermark;
+			}
+			this.consecutiveFailures = 0;
+			schedule(this.interval);
+		}
+		catch (DataAccessResourceFailureException ex) {
+			FailureCause cause = FailureCause.of(ex);
+			if (cause == FailureCause.OTHER || cause == FailureCause.CONNECTION_FAILURE) {
+				logger.warn("Could not delete old identity values from {}", this.tableName, ex);
+			}
+			this.backoffCount.increment();
+			this.consecutiveFailures++;
+			schedule(backoff());
+		}
+	}
+
+	private Duration backoff() {
+		Duration delay = this.interval.multipliedBy(1L << Math.min(this.consecutiveFailures, 20));
+		return (delay.compareTo(this.maxBackoff) > 0 ? this.maxBackoff : delay);
+	}
+
+	private int deleteChunk(long watermark) {
+		Connection con = DataSourceUtils.getConnection(this.dataSource);
+		Statement stmt = null;
+		try {
+			stmt = con.createStatement();
+			stmt.setQueryTimeout(this.queryTimeoutSeconds);
+			return stmt.executeUpdate(getDeleteStatement(this.batchSize, watermark));
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not delete old identity values", ex);
+		}
+		finally {
+			JdbcUtils.closeStatement(stmt);
+			DataSourceUtils.releaseConnection(con, this.dataSource);
+		}
+	}
+
+	/**
+	 * Return the statement that deletes at most {@code batchSize} rows below the watermark.
+	 */
+	protected String getDeleteStatement(int batchSize, long watermark) {
+		return "delete top (" + batchSize + ") from " + this.tableName + " with (rowlock, readpast) where "
+				+ this.columnName + " < " + watermark;
+	}
+
+	/**
+	 * Return the number of passes that deleted rows.
+	 */
+	public long getRunCount() {
+		return this.runCount.sum();
+	}
+
+	/**
+	 * Return the total number of rows deleted.
+	 */
+	public long getRowCount() {
+		return this.rowCount.sum();
+	}
+
+	/**
+	 * Return the number of times the reaper backed off because a delete failed.
+	 */
+	public long getBackoffCount() {
+		return this.backoffCount.sum();
+	}
+}
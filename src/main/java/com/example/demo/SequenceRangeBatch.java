@@ -0,0 +1,146 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Reserves the ranges of several {@link SqlServerSequenceRangeMaxValueIncrementer}s in one round trip.
+ *
+ * <p>When one of the registered incrementers needs a new range, every other registered incrementer whose cache is
+ * {@link IdBlockCache#isRunningLow() running low} gets a range of its cache size in the same batch:
+ *
+ * <pre class="code">exec sp_sequence_get_range @sequence_name = N'BATCH_JOB_SEQ', ...
+ * exec sp_sequence_get_range @sequence_name = N'BATCH_JOB_EXECUTION_SEQ', ...
+ * select 0, ... union all select 1, ...</pre>
+ *
+ * The extra ranges are handed to their caches as the next block, so sequences that are used together, like the job,
+ * job execution and step execution sequences of Spring Batch, are refilled together. A range is lost, leaving a gap,
+ * if its cache found another next block in the meantime.
+ *
+ * @author Tyler Van Gorder
+ */
+public class SequenceRangeBatch {
+
+	private final DataSource dataSource;
+
+	private final List<SqlServerSequenceRangeMaxValueIncrementer> incrementers = new CopyOnWriteArrayList<>();
+
+	private final LongAdder roundTripCount = new LongAdder();
+
+	private final LongAdder piggybackCount = new LongAdder();
+
+	public SequenceRangeBatch(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Register an incrementer so that its ranges are reserved through this batch.
+	 */
+	public void register(SqlServerSequenceRangeMaxValueIncrementer incrementer) {
+		this.incrementers.add(incrementer);
+		incrementer.setRangeBatch(this);
+	}
+
+	/**
+	 * Reserve a range of {@code size} values for the given incrementer, together with the ranges of the other
+	 * incrementers that are running low.
+	 */
+	IdBlock reserve(SqlServerSequenceRangeMaxValueIncrementer requester, int size) {
+		List<SqlServerSequenceRangeMaxValueIncrementer> batch = new ArrayList<>();
+		batch.add(requester);
+		for (SqlServerSequenceRangeMaxValueIncrementer incrementer : this.incrementers) {
+			if (incrementer != requester && incrementer.getValueCache().isRunningLow()) {
+				batch.add(incrementer);
+			}
+		}
+		String[] sequenceNames = new String[batch.size()];
+		int[] rangeSizes = new int[batch.size()];
+		for (int i = 0; i < sequenceNames.length; i++) {
+			sequenceNames[i] = batch.get(i).getIncrementerName();
+			rangeSizes[i] = (i == 0 ? size : batch.get(i).getCacheSize());
+		}
+		IdBlock[] ranges = reserveRanges(sequenceNames, rangeSizes);
+		for (int i = 1; i < ranges.length; i++) {
+			if (ranges[i] != null && batch.get(i).getValueCache().offerStandby(ranges[i])) {
+				this.piggybackCount.increment();
+			}
+		}
+		return ranges[0];
+	}
+
+	private IdBlock[] reserveRanges(String[] sequenceNames, int[] rangeSizes) {
+		Connection con = DataSourceUtils.getConnection(this.dataSource);
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			DataSourceUtils.applyTransactionTimeout(stmt, this.dataSource);
+			rs = stmt.executeQuery(getBatchRangeQuery(sequenceNames, rangeSizes));
+			IdBlock[] ranges = new IdBlock[sequenceNames.length];
+			while (rs.next()) {
+				int index = rs.getInt(1);
+				ranges[index] = IdBlock.range(rs.getLong(2), rs.getLong(3), rangeSizes[index]);
+			}
+			if (ranges[0] == null) {
+				throw new DataAccessResourceFailureException("Sequence range batch did not return a range for " + sequenceNames[0]);
+			}
+			this.roundTripCount.increment();
+			return ranges;
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not reserve sequence ranges", ex);
+		}
+		finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			DataSourceUtils.releaseConnection(con, this.dataSource);
+		}
+	}
+
+	/**
+	 * Return the query that reserves a range from each of the given sequences. The query must return a row per
+	 * sequence with its index in the first column, the first value of its range in the second and the increment of
+	 * the sequence in the third.
+	 */
+	protected String getBatchRangeQuery(String[] sequenceNames, int[] rangeSizes) {
+		StringBuilder sql = new StringBuilder(256 * sequenceNames.length);
+		sql.append("set nocount on;");
+		for (int i = 0; i < sequenceNames.length; i++) {
+			sql.append(" declare @first_").append(i).append(" sql_variant, @increment_").append(i).append(" sql_variant;");
+			sql.append(" exec sp_sequence_get_range @sequence_name = N'").append(sequenceNames[i]).append("', @range_size = ")
+					.append(rangeSizes[i]).append(", @range_first_value = @first_").append(i)
+					.append(" output, @sequence_increment = @increment_").append(i).append(" output;");
+		}
+		for (int i = 0; i < sequenceNames.length; i++) {
+			sql.append(i == 0 ? " select " : " union all select ").append(i).append(", cast(@first_").append(i)
+					.append(" as bigint), cast(@increment_").append(i).append(" as bigint)");
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Return the number of round trips made by the batch.
+	 */
+	public long getRoundTripCount() {
+		return this.roundTripCount.sum();
+	}
+
+	/**
+	 * Return the number of ranges reserved for an incrementer on the round trip of another one.
+	 */
+	public long getPiggybackCount() {
+		return this.piggybackCount.sum();
+	}
+}
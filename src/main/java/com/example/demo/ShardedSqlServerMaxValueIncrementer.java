@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link SqlServerMaxValueIncrementer} that spreads the inserts of all processes over "shardCount" sequence tables
+ * instead of one, so that they no longer contend for the last page of a single table:
+ *
+ * <pre class="code">create table EXAMPLE_SEQ_0 (id bigint identity)
+ * create table EXAMPLE_SEQ_1 (id bigint identity)
+ * ...</pre>
+ *
+ * Each incrementer inserts into the table of its own shard only. The identity values of the different tables overlap,
+ * so every identity is mapped to {@code identity * shardCount + shard}, which is unique across all the shards. Values
+ * are increasing within a shard but not across shards.
+ *
+ * <p>The mapping is only unique for as long as the shard count never changes: the values of different shard counts
+ * collide ({@code 2 * 4 + 0} and {@code 1 * 8 + 0} are both 8), and the tables keep their identities when the count
+ * changes. Every process must use the same shard count, and it must not be changed once values have been handed out
+ * unless the tables are reseeded above the largest value served so far.
+ *
+ * <p>The shard is chosen when the incrementer is created, by default at random, so that every process of an
+ * application talks to one table and the processes are spread evenly over the tables. The reaper of an incrementer
+ * only deletes from the table of its shard, on the watermark of that table.
+ *
+ * @author Tyler Van Gorder
+ * @see DataFieldMaxValueIncrementer
+ */
+public class ShardedSqlServerMaxValueIncrementer extends SqlServerMaxValueIncrementer {
+
+	private final int shardCount;
+
+	private final int shard;
+
+	/**
+	 * Create an incrementer on a shard chosen at random.
+	 * @param dataSource the DataSource to use
+	 * @param tablePrefix the name of the sequence tables without the "_shard" suffix
+	 * @param columnName the name of the column in the sequence tables to use
+	 * @param shardCount the number of sequence tables, which must never change once values have been handed out
+	 */
+	public ShardedSqlServerMaxValueIncrementer(DataSource dataSource, String tablePrefix, String columnName, int shardCount) {
+		this(dataSource, tablePrefix, columnName, shardCount, ThreadLocalRandom.current().nextInt(shardCount));
+	}
+
+	/**
+	 * Create an incrementer on the given shard.
+	 * @param dataSource the DataSource to use
+	 * @param tablePrefix the name of the sequence tables without the "_shard" suffix
+	 * @param columnName the name of the column in the sequence tables to use
+	 * @param shardCount the number of sequence tables
+	 * @param shard the shard to insert into, from 0 to shardCount - 1
+	 */
+	public ShardedSqlServerMaxValueIncrementer(DataSource dataSource, String tablePrefix, String columnName, int shardCount, int shard) {
+		super(dataSource, tableName(tablePrefix, shard), columnName);
+		if (shard < 0 || shard >= shardCount) {
+			throw new IllegalArgumentException("Shard " + shard + " is not between 0 and " + (shardCount - 1));
+		}
+		this.shardCount = shardCount;
+		this.shard = shard;
+	}
+
+	/**
+	 * Return the name of the sequence table of a shard.
+	 */
+	public static String tableName(String tablePrefix, int shard) {
+		return tablePrefix + "_" + shard;
+	}
+
+	public int getShardCount() {
+		return this.shardCount;
+	}
+
+	public int getShard() {
+		return this.shard;
+	}
+
+	@Override
+	protected void valuesReserved(Statement stmt, long[] values) {
+		// The reaper works on the identities of the table, the block is served from the mapped values.
+		super.valuesReserved(stmt, values);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = values[i] * this.shardCount + this.shard;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package com.example.demo;
+
+import java.nio.LongBuffer;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.support.incrementer.AbstractDataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * A {@link DataFieldMaxValueIncrementer} that composes each value from a timestamp, a worker id and a counter, in the
+ * style of Twitter's Snowflake, without a round trip to the database per value or per block:
+ *
+ * <pre class="code">| 0 | 41 bits: milliseconds since 2018-01-01 UTC | 10 bits: worker id | 12 bits: counter |</pre>
+ *
+ * The worker id is leased from a {@link WorkerIdLease} table when the incrementer starts and the lease is renewed on
+ * the {@link TaskScheduler} every third of its duration. As long as no two processes hold the same worker id, the
+ * values of all processes are unique, and the values of each process are increasing. Up to 1024 processes can share
+ * the lease table, each one serving up to 4096 values per millisecond.
+ *
+ * <p>The last value handed out is kept in a single {@link AtomicLong}, a value is claimed with one compare and set and
+ * the bulk methods claim a run of consecutive values of the same millisecond at once.
+ *
+ * <ul>
+ * <li>When the counter of a millisecond is exhausted, the values are taken from the next millisecond ahead of the
+ * clock. The clock must catch up before the values may run more than "maxClockDrift" ahead of it.</li>
+ * <li>When the system clock moves backwards, the values keep using the last timestamp, so they stay unique and
+ * increasing. If the clock falls more than "maxClockDrift" behind, the incrementer refuses to serve values until it
+ * has caught up.</li>
+ * <li>If the lease cannot be renewed, values are served until it expires and then refused. If another process has
+ * taken the worker id in the meantime, a new one is leased.</li>
+ * <li>Every acquisition and renewal records an upper bound of the timestamps the process may use in the lease table,
+ * and values beyond it are refused. The next holder of the worker id starts above that bound, so a process that
+ * crashed can never be repeated by a process whose clock is behind, which refuses values until its clock catches up
+ * instead.</li>
+ * </ul>
+ *
+ * The values are longs well beyond the range of an int, so {@link #nextIntValue()} is not supported.
+ *
+ * @author Tyler Van Gorder
+ */
+public class SnowflakeMaxValueIncrementer extends AbstractDataFieldMaxValueIncrementer implements BulkIncrementer {
+
+	private static final Logger logger = LoggerFactory.getLogger(SnowflakeMaxValueIncrementer.class);
+
+	/** 2018-01-01T00:00:00Z, the timestamps are relative to it */
+	public static final long EPOCH_MILLIS = 1514764800000L;
+
+	static final int WORKER_BITS = 10;
+
+	static final int SEQUENCE_BITS = 12;
+
+	static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+
+	static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private static final int TIMESTAMP_SHIFT = WORKER_BITS + SEQUENCE_BITS;
+
+	private final TaskScheduler scheduler;
+
+	private WorkerIdLease lease;
+
+	private long maxClockDriftMillis = 1000;
+
+	/** The last value handed out, or the last value of a millisecond that may not be used */
+	private final AtomicLong state = new AtomicLong();
+
+	/** The highest timestamp recorded in the lease table */
+	private volatile long timestampBound;
+
+	/** The {@link System#nanoTime()} at which the lease expires */
+	private volatile long leaseDeadline;
+
+	private volatile boolean started;
+
+	private boolean stopped;
+
+	private ScheduledFuture<?> renewal;
+
+	private final LongAdder servedCount = new LongAdder();
+
+	private final LongAdder overflowCount = new LongAdder();
+
+	private final LongAdder clockRegressionCount = new LongAdder();
+
+	/**
+	 * @param dataSource the DataSource of the lease table
+	 * @param leaseTableName the name of the worker lease table
+	 * @param scheduler the scheduler that renews the lease
+	 */
+	public SnowflakeMaxValueIncrementer(DataSource dataSource, String leaseTableName, TaskScheduler scheduler) {
+		super(dataSource, leaseTableName);
+		this.scheduler = scheduler;
+		this.lease = new WorkerIdLease(dataSource, leaseTableName);
+	}
+
+	/**
+	 * Set the lease of the worker id, for a lease that is not on the lease table of this incrementer or that needs
+	 * different statements. Must be called before the incrementer starts.
+	 */
+	public void setLease(WorkerIdLease lease) {
+		this.lease = lease;
+	}
+
+	public WorkerIdLease getLease() {
+		return this.lease;
+	}
+
+	/**
+	 * Set how far the values may run ahead of the system clock, defaults to 1 second. This is also the grace period
+	 * before an expired worker id can be leased by another process.
+	 */
+	public void setMaxClockDrift(Duration maxClockDrift) {
+		this.maxClockDriftMillis = maxClockDrift.toMillis();
+		this.lease.setGracePeriod(maxClockDrift);
+	}
+
+	/**
+	 * Lease a worker id and start renewing the lease. The first value requested starts the incrementer if this has
+	 * not been called.
+	 */
+	public synchronized void start() {
+		if (this.stopped) {
+			throw new DataAccessResourceFailureException("The incrementer " + getIncrementerName() + " has been stopped");
+		}
+		if (!this.started) {
+			acquireLease();
+			long period = Math.max(1, this.lease.getDuration().toMillis() / 3);
+			this.renewal = this.scheduler.scheduleAtFixedRate(this::renewLease, period);
+			this.started = true;
+		}
+	}
+
+	/**
+	 * Stop renewing the lease and give the worker id back, typically when the application shuts down. The incrementer
+	 * refuses to serve values afterwards.
+	 */
+	public synchronized void stop() {
+		this.stopped = true;
+		this.started = false;
+		this.leaseDeadline = System.nanoTime();
+		if (this.renewal != null) {
+			this.renewal.cancel(false);
+			this.renewal = null;
+		}
+		try {
+			this.lease.release(timestamp(this.state.get()));
+		}
+		catch (DataAccessException ex) {
+			logger.warn("Could not release worker id {}, it is free again once its lease expires", this.lease.getWorkerId(), ex);
+		}
+	}
+
+	/**
+	 * Return the leased worker id, -1 while the incrementer is not started.
+	 */
+	public int getWorkerId() {
+		return this.lease.getWorkerId();
+	}
+
+	// Called with the monitor held.
+	private void acquireLease() {
+		long acquiring = System.nanoTime();
+		int workerId = this.lease.acquire(currentTimeMillis() - EPOCH_MILLIS);
+		if (workerId > MAX_WORKER_ID) {
+			throw new DataAccessResourceFailureException("Worker id " + workerId + " of " + getIncrementerName()
+					+ " does not fit into " + WORKER_BITS + " bits");
+		}
+		// Mark the last millisecond the previous holder may have used as exhausted for the new worker id.
+		long previousTimestamp = this.lease.getLastTimestamp();
+		this.state.updateAndGet(last -> compose(Math.max(timestamp(last), previousTimestamp), workerId, SEQUENCE_MASK));
+		this.timestampBound = this.lease.getTimestampBound();
+		this.leaseDeadline = acquiring + this.lease.getDuration().toNanos();
+		logger.info("Leased worker id {} from {}", workerId, getIncrementerName());
+	}
+
+	private synchronized void renewLease() {
+		if (!this.started) {
+			return;
+		}
+		long renewing = System.nanoTime();
+		try {
+			if (this.lease.renew(Math.max(timestamp(this.state.get()), currentTimeMillis() - EPOCH_MILLIS))) {
+				this.timestampBound = this.lease.getTimestampBound();
+				this.leaseDeadline = renewing + this.lease.getDuration().toNanos();
+				return;
+			}
+			logger.warn("Worker id {} has been leased by another process, leasing a new one", this.lease.getWorkerId());
+			this.leaseDeadline = renewing;
+			acquireLease();
+		}
+		catch (DataAccessException ex) {
+			logger.warn("Could not renew the lease of worker id {}, values are served until it expires", this.lease.getWorkerId(), ex);
+		}
+	}
+
+	@Override
+	public int nextIntValue() {
+		throw new InvalidDataAccessApiUsageException("The values of " + getIncrementerName() + " do not fit into an int, use nextLongValue()");
+	}
+
+	@Override
+	protected long getNextKey() {
+		while (true) {
+			long last = this.state.get();
+			long next = nextValue(last);
+			if (this.state.compareAndSet(last, next)) {
+				this.servedCount.increment();
+				return next;
+			}
+		}
+	}
+
+	@Override
+	public void nextLongValues(long[] target, int offset, int length) {
+		int end = offset + length;
+		while (offset < end) {
+			long last = this.state.get();
+			long first = nextValue(last);
+			int count = (int) Math.min(end - offset, SEQUENCE_MASK - (first & SEQUENCE_MASK) + 1);
+			if (this.state.compareAndSet(last, first + count - 1)) {
+				for (int i = 0; i < count; i++) {
+					target[offset++] = first + i;
+				}
+				this.servedCount.add(count);
+			}
+		}
+	}
+
+	@Override
+	public void nextLongValues(LongBuffer target) {
+		while (target.hasRemaining()) {
+			long last = this.state.get();
+			long first = nextValue(last);
+			int count = (int) Math.min(target.remaining(), SEQUENCE_MASK - (first & SEQUENCE_MASK) + 1);
+			if (this.state.compareAndSet(last, first + count - 1)) {
+				for (int i = 0; i < count; i++) {
+					target.put(first + i);
+				}
+				this.servedCount.add(count);
+			}
+		}
+	}
+
+	/**
+	 * Return the value that follows the last value handed out.
+	 */
+	private long nextValue(long last) {
+		if (!this.started || System.nanoTime() - this.leaseDeadline >= 0) {
+			checkLease();
+			last = this.state.get();
+		}
+		long timestamp = timestamp(last);
+		long worker = last & (MAX_WORKER_ID << SEQUENCE_BITS);
+		while (true) {
+			long now = currentTimeMillis() - EPOCH_MILLIS;
+			if (now > timestamp) {
+				return (checkBound(now) << TIMESTAMP_SHIFT) | worker;
+			}
+			if (timestamp - now > this.maxClockDriftMillis) {
+				this.clockRegressionCount.increment();
+				throw new DataAccessResourceFailureException("The clock is " + (timestamp - now)
+						+ " ms behind the last timestamp of " + getIncrementerName() + ", refusing to serve values until it catches up");
+			}
+			if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+				return last + 1;
+			}
+			if (timestamp + 1 - now <= this.maxClockDriftMillis) {
+				long next = checkBound(timestamp + 1);
+				this.overflowCount.increment();
+				return (next << TIMESTAMP_SHIFT) | worker;
+			}
+			// Too far ahead of the clock, wait for it.
+			Thread.yield();
+		}
+	}
+
+	private long checkBound(long timestamp) {
+		if (timestamp > this.timestampBound) {
+			throw new DataAccessResourceFailureException("Timestamp " + timestamp + " is beyond the bound recorded for worker id "
+					+ this.lease.getWorkerId() + " of " + getIncrementerName() + ", refusing to serve values until the lease is renewed");
+		}
+		return timestamp;
+	}
+
+	private void checkLease() {
+		if (!this.started) {
+			start();
+		}
+		if (System.nanoTime() - this.leaseDeadline >= 0) {
+			throw new DataAccessResourceFailureException("The lease of worker id " + this.lease.getWorkerId() + " of "
+					+ getIncrementerName() + " has expired");
+		}
+	}
+
+	/**
+	 * Return the current time in milliseconds, subclasses can override this to control the clock.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	static long compose(long timestamp, long workerId, long sequence) {
+		return (timestamp << TIMESTAMP_SHIFT) | (workerId << SEQUENCE_BITS) | sequence;
+	}
+
+	/**
+	 * Return the timestamp of a value in milliseconds since the {@link #EPOCH_MILLIS epoch}.
+	 */
+	public static long timestamp(long value) {
+		return value >>> TIMESTAMP_SHIFT;
+	}
+
+	/**
+	 * Return the worker id of a value.
+	 */
+	public static int workerId(long value) {
+		return (int) ((value >>> SEQUENCE_BITS) & MAX_WORKER_ID);
+	}
+
+	/**
+	 * Return the number of values served.
+	 */
+	public long getServedCount() {
+		return this.servedCount.sum();
+	}
+
+	/**
+	 * Return the number of times the counter of a millisecond was exhausted and values were taken from the next one.
+	 */
+	public long getOverflowCount() {
+		return this.overflowCount.sum();
+	}
+
+	/**
+	 * Return the number of requests refused because the clock had fallen too far behind.
+	 */
+	public long getClockRegressionCount() {
+		return this.clockRegressionCount.sum();
+	}
+}
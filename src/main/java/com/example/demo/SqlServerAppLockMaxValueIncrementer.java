@@ -0,0 +1,159 @@
+package com.example.demo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link SqlServerMaxValueIncrementer} that serializes the refills of all processes with a SQL Server application
+ * lock, for SQL Server 2008 instances that have no sequences:
+ *
+ * <pre class="code">exec @result = sp_getapplock @Resource = 'EXAMPLE_SEQ', @LockMode = 'Exclusive', @LockOwner = 'Session', @LockTimeout = 5000</pre>
+ *
+ * Only one process at a time inserts a block into the sequence table, so the inserts of different processes never
+ * interleave on the same pages and never compete for the locks that SQL Server escalates. Refills queue up on the
+ * application lock instead, which gives a predictable ceiling of one block per refill time rather than deadlocks.
+ *
+ * <p>The lock is owned by the session and released as soon as the block has been reserved, even when the block is
+ * reserved within the caller's transaction, so the lock is never held for the rest of that transaction. If the lock
+ * is not granted within "appLockTimeout", the refill goes ahead without it, the same way a plain
+ * {@link SqlServerMaxValueIncrementer} would.
+ *
+ * <p>The time spent waiting for the lock and the number of refills that went ahead without it are available through
+ * {@link #getAppLockWaitNanos()} and {@link #getAppLockTimeoutCount()}.
+ *
+ * @author Tyler Van Gorder
+ * @see DataFieldMaxValueIncrementer
+ */
+public class SqlServerAppLockMaxValueIncrementer extends SqlServerMaxValueIncrementer {
+
+	private static final Logger logger = LoggerFactory.getLogger(SqlServerAppLockMaxValueIncrementer.class);
+
+	private Duration appLockTimeout = Duration.ofSeconds(5);
+
+	private final LongAdder appLockWaitCount = new LongAdder();
+
+	private final LongAdder appLockWaitNanos = new LongAdder();
+
+	private final LongAdder appLockTimeoutCount = new LongAdder();
+
+	/**
+	 * Default constructor for bean property style usage.
+	 * @see #setDataSource
+	 * @see #setIncrementerName
+	 * @see #setColumnName
+	 */
+	public SqlServerAppLockMaxValueIncrementer() {
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param dataSource the DataSource to use
+	 * @param incrementerName the name of the sequence table to use, also the name of the application lock
+	 * @param columnName the name of the column in the sequence table to use
+	 */
+	public SqlServerAppLockMaxValueIncrementer(DataSource dataSource, String incrementerName, String columnName) {
+		super(dataSource, incrementerName, columnName);
+	}
+
+	/**
+	 * Set how long a refill waits for the application lock before it goes ahead without it, defaults to 5 seconds.
+	 */
+	public void setAppLockTimeout(Duration appLockTimeout) {
+		this.appLockTimeout = appLockTimeout;
+	}
+
+	@Override
+	protected long[] reserveValues(Statement stmt, int count) throws SQLException {
+		long waiting = System.nanoTime();
+		int result = getAppLock(stmt);
+		this.appLockWaitNanos.add(System.nanoTime() - waiting);
+		this.appLockWaitCount.increment();
+		if (result < 0) {
+			// -1 timed out, -2 cancelled, -3 chosen as deadlock victim, -999 parameter or call error.
+			this.appLockTimeoutCount.increment();
+			if (result == -1) {
+				logger.warn("Application lock {} not granted within {}ms, refilling without it", getIncrementerName(),
+						this.appLockTimeout.toMillis());
+			}
+			else if (result == -999) {
+				logger.warn("Application lock {} could not be requested, refilling without it", getIncrementerName());
+			}
+			else {
+				logger.debug("Application lock {} not granted ({}), refilling without it", getIncrementerName(), result);
+			}
+			return super.reserveValues(stmt, count);
+		}
+		try {
+			return super.reserveValues(stmt, count);
+		}
+		finally {
+			releaseAppLock(stmt);
+		}
+	}
+
+	private void releaseAppLock(Statement stmt) {
+		// Never thrown, so that a failure to release cannot hide the failure of the refill.
+		try {
+			stmt.execute(getReleaseAppLockStatement());
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not release application lock {}, it is held until the session ends", getIncrementerName(), ex);
+		}
+	}
+
+	private int getAppLock(Statement stmt) throws SQLException {
+		ResultSet rs = stmt.executeQuery(getAppLockStatement(this.appLockTimeout.toMillis()));
+		try {
+			return (rs.next() ? rs.getInt(1) : -999);
+		}
+		finally {
+			JdbcUtils.closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Return the statement that requests the application lock and selects the result of {@code sp_getapplock}.
+	 */
+	protected String getAppLockStatement(long timeoutMillis) {
+		return "set nocount on; declare @result int; exec @result = sp_getapplock @Resource = '" + getIncrementerName()
+				+ "', @LockMode = 'Exclusive', @LockOwner = 'Session', @LockTimeout = " + timeoutMillis + "; select @result";
+	}
+
+	/**
+	 * Return the statement that releases the application lock.
+	 */
+	protected String getReleaseAppLockStatement() {
+		return "exec sp_releaseapplock @Resource = '" + getIncrementerName() + "', @LockOwner = 'Session'";
+	}
+
+	/**
+	 * Return the number of times a refill requested the application lock.
+	 */
+	public long getAppLockWaitCount() {
+		return this.appLockWaitCount.sum();
+	}
+
+	/**
+	 * Return the total time refills spent waiting for the application lock.
+	 */
+	public long getAppLockWaitNanos() {
+		return this.appLockWaitNanos.sum();
+	}
+
+	/**
+	 * Return the number of refills that went ahead without the application lock because it was not granted.
+	 */
+	public long getAppLockTimeoutCount() {
+		return this.appLockTimeoutCount.sum();
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.incrementer.AbstractColumnMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A {@link DataFieldMaxValueIncrementer} for SQL Server that reserves blocks of values from a single-row counter
+ * table (the "hi/lo" approach).
+ *
+ * <p>Each time the cache runs out, one {@code UPDATE ... OUTPUT} statement advances the counter by "cacheSize" and
+ * returns the previous value, the block is every value from the previous value up to (but not including) the new one.
+ * Rows are never inserted into or deleted from the counter table, so there is nothing to reap and the only lock
+ * taken is a row lock on the single counter row.
+ *
+ * <p>The update is committed on its own connection, never within the caller's transaction: if the caller rolled
+ * back, the counter would go back while the block stays cached, and another process would be handed the same block.
+ * The row lock is therefore only held for the duration of the update. The connection is taken from the refill
+ * DataSource if one is set, and from the DataSource otherwise.
+ *
+ * <p>Example:
+ *
+ * <pre class="code">create table tab_hilo (next_val bigint not null)
+ * insert into tab_hilo values (1)</pre>
+ *
+ * If the server or your application is stopped or crashes, the unused values of the current block will never be
+ * served. The maximum hole size in numbering is consequently the value of cacheSize.
+ *
+ * @author Tyler Van Gorder
+ */
+public class SqlServerHiLoMaxValueIncrementer extends AbstractColumnMaxValueIncrementer implements BlockCachingIncrementer {
+
+	/** The current block of values */
+	private final IdBlockCache valueCache = new IdBlockCache(this::reserveBlock, this::getCacheSize);
+
+	private DataSource refillDataSource;
+
+	/**
+	 * Default constructor for bean property style usage.
+	 * @see #setDataSource
+	 * @see #setIncrementerName
+	 * @see #setColumnName
+	 */
+	public SqlServerHiLoMaxValueIncrementer() {
+		this.valueCache.setRefillOutsideTransaction(true);
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param dataSource the DataSource to use
+	 * @param incrementerName the name of the counter table to use
+	 * @param columnName the name of the counter column in the table
+	 */
+	public SqlServerHiLoMaxValueIncrementer(DataSource dataSource, String incrementerName, String columnName) {
+		super(dataSource, incrementerName, columnName);
+		this.valueCache.setRefillOutsideTransaction(true);
+	}
+
+	/**
+	 * Set the DataSource the counter is advanced on, typically a small pool of its own, so that callers holding a
+	 * connection in a transaction can never exhaust it. Defaults to the DataSource of the incrementer.
+	 */
+	public void setRefillDataSource(DataSource refillDataSource) {
+		this.refillDataSource = refillDataSource;
+	}
+
+	@Override
+	public IdBlockCache getValueCache() {
+		return this.valueCache;
+	}
+
+	@Override
+	protected long getNextKey() throws DataAccessException {
+		return this.valueCache.next();
+	}
+
+	private IdBlock reserveBlock(int size) {
+		// Not through DataSourceUtils, which would hand out the connection bound to the caller's transaction.
+		DataSource dataSource = (this.refillDataSource != null ? this.refillDataSource : getDataSource());
+		Connection con = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			con = dataSource.getConnection();
+			boolean autoCommit = con.getAutoCommit();
+			stmt = con.createStatement();
+			try {
+				rs = stmt.executeQuery(getBlockIncrementStatement(size));
+				if (!rs.next()) {
+					throw new DataAccessResourceFailureException("Counter table " + getIncrementerName() + " does not contain a row");
+				}
+				IdBlock block = IdBlock.range(rs.getLong(1), 1, size);
+				if (!autoCommit) {
+					con.commit();
+				}
+				return block;
+			}
+			catch (SQLException | RuntimeException ex) {
+				if (!autoCommit) {
+					con.rollback();
+				}
+				throw ex;
+			}
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not advance counter", ex);
+		}
+		finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(con);
+		}
+	}
+
+	/**
+	 * Return the statement that advances the counter by {@code blockSize} and returns the value of the counter
+	 * before the update.
+	 */
+	protected String getBlockIncrementStatement(int blockSize) {
+		return "update " + getIncrementerName() + " set " + getColumnName() + " = " + getColumnName() + " + " + blockSize
+				+ " output deleted." + getColumnName();
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import org.springframework.batch.item.database.support.DataFieldMaxValueIncrementerFactory;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * A Spring Batch {@link DataFieldMaxValueIncrementerFactory} that hands out the incrementers of an
+ * {@link IncrementerRegistry}, so the job repository and the application share one cached incrementer per sequence
+ * instead of Spring Batch creating its own {@code SqlServerMaxValueIncrementer} for each sequence table.
+ *
+ * <p>Only the {@code SQLSERVER} database type is supported. Configure it on the job repository with
+ * {@code JobRepositoryFactoryBean.setIncrementerFactory}.
+ *
+ * @author Tyler Van Gorder
+ */
+public class SqlServerIncrementerFactory implements DataFieldMaxValueIncrementerFactory {
+
+	private static final String SQLSERVER = "SQLSERVER";
+
+	private final IncrementerRegistry registry;
+
+	public SqlServerIncrementerFactory(IncrementerRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public DataFieldMaxValueIncrementer getIncrementer(String databaseType, String incrementerName) {
+		if (!isSupportedIncrementerType(databaseType)) {
+			throw new IllegalArgumentException("databaseType argument was not on the approved list");
+		}
+		return this.registry.getIncrementer(incrementerName);
+	}
+
+	@Override
+	public boolean isSupportedIncrementerType(String databaseType) {
+		return SQLSERVER.equalsIgnoreCase(databaseType);
+	}
+
+	@Override
+	public String[] getSupportedIncrementerTypes() {
+		return new String[] { SQLSERVER };
+	}
+}
@@ -16,18 +16,14 @@
 
 package com.example.demo;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 
 import javax.sql.DataSource;
 
-import org.springframework.dao.DataAccessResourceFailureException;
-import org.springframework.jdbc.datasource.DataSourceUtils;
-import org.springframework.jdbc.support.JdbcUtils;
-import org.springframework.jdbc.support.incrementer.AbstractColumnMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * A {@link DataFieldMaxValueIncrementer} for SQL Server that uses a sequence table to auto-increment a value.
@@ -58,11 +54,18 @@ import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer
  * processes) and the incrementer is called within the context of an existing database transaction. 
  * 
  * <p>To get around the locking model, this class relies on a reaping strategy to clean up rows within the
- * sequence table. A reaper interval is used to keep track of the last time the rows were removed from the table.
- * Each time {@code getNextKey} is called and the reaping interval has been reached, this class will spin up a
- * thread to delete the data from the table. The use of a new thread insures the delete is handled outside the
- * scope of any current transaction.  The default reaper interval is 20 seconds.
- * 
+ * sequence table. Every refill moves the watermark of a {@link ScheduledIdentityReaper} to the lowest value of the new
+ * block, and the reaper deletes the rows below it in bounded chunks every reaper interval, on a scheduler thread and
+ * outside the scope of any current transaction. Rows of the current block and everything inserted after it are left
+ * alone, so the reaper never competes for the pages that other processes are inserting into. The default reaper
+ * interval is 20 seconds.
+ *
+ * <p>All the incrementers that are not given a scheduler share one daemon scheduler thread. Applications should pass
+ * their own {@link TaskScheduler} to {@link #setReaperScheduler} so that it is shut down with the application.
+ *
+ * <p>Blocks of values are reserved according to the {@link IdentityRefillMode}, see
+ * {@link AbstractSqlServerTableMaxValueIncrementer}.
+ *
  * <p><b>HINT:</b> Since Microsoft SQL Server supports the JDBC 3.0 {@code getGeneratedKeys}
  * method, it is recommended to use IDENTITY columns directly in the tables and then using a
  * {@link org.springframework.jdbc.core.simple.SimpleJdbcInsert} or utilizing
@@ -77,16 +80,12 @@ import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer
  * @author Tyler Van Gorder
  * @since 2.5.5
  */
-public class SqlServerMaxValueIncrementer extends AbstractColumnMaxValueIncrementer {
-
-	private long[] valueCache;
+public class SqlServerMaxValueIncrementer extends AbstractSqlServerTableMaxValueIncrementer implements ReapingIncrementer {
 
-	/** The next id to serve from the value cache */
-	private int nextValueIndex = -1;
-
-	private final ReapOldValues reaper = new ReapOldValues();	
 	private int reaperIntervalSeconds = 20;
-	private long nextReapTime;
+	private int reaperBatchSize = 1000;
+	private TaskScheduler reaperScheduler;
+	private volatile ScheduledIdentityReaper reaper;
 
 	/**
 	 * Default constructor for bean property style usage.
@@ -97,7 +96,6 @@ public class SqlServerMaxValueIncrementer extends AbstractColumnMaxValueIncremen
 	 * @see #setReaperInternalSeconds
 	 */
 	public SqlServerMaxValueIncrementer() {
-		nextReapTime = getReapTime();
 	}
 	
 	/**
@@ -109,93 +107,77 @@ public class SqlServerMaxValueIncrementer extends AbstractColumnMaxValueIncremen
 	 */
 	public SqlServerMaxValueIncrementer(DataSource dataSource, String incrementerName, String columnName) {
 		super(dataSource, incrementerName, columnName);
-		nextReapTime = getReapTime();
-	}
-	
-	private String getIncrementStatement() {
-		return "insert into " + getIncrementerName() + " default values";
 	}
 
-	private String getIdentityStatement() {
-		return "select @@identity";
+	@Override
+	protected void valuesReserved(Statement stmt, long[] values) {
+		// The values are sorted, everything below the first one has been handed out by this or another process.
+		getReaper().advanceWatermark(values[0]);
 	}
 
-	@Override
-	protected synchronized long getNextKey() {
-		if (this.nextValueIndex < 0 || this.nextValueIndex >= getCacheSize()) {
-			/*
-			* Need to use straight JDBC code because we need to make sure that the insert and select
-			* are performed on the same connection (otherwise we can't be sure that @@identity
-			* returns the correct value)
-			*/
-			Connection con = DataSourceUtils.getConnection(getDataSource());
-			Statement stmt = null;
-			try {
-				stmt = con.createStatement();
-				DataSourceUtils.applyTransactionTimeout(stmt, getDataSource());
-				this.valueCache = new long[getCacheSize()];
-				this.nextValueIndex = 0;
-				for (int i = 0; i < getCacheSize(); i++) {
-					stmt.executeUpdate(getIncrementStatement());
-					ResultSet rs = stmt.executeQuery(getIdentityStatement());
-					try {
-						if (!rs.next()) {
-							throw new DataAccessResourceFailureException("Identity statement failed after inserting");
-						}
-						this.valueCache[i] = rs.getLong(1);
-					}
-					finally {
-						JdbcUtils.closeResultSet(rs);
-					}
-				}
-				if (System.currentTimeMillis() > nextReapTime) {
-					//If the current time has exceeded the reap time (default 20 seconds), spin up a thread to delete the old values.
-					
-					//NOTE: This class uses a new thread to isolate the delete in a separate transaction rather than
-					//using a new transaction and requiring the PlatformTransactionManager as an injected dependency.					
-					Thread reapingThread = new Thread(reaper, "Incrementer " +  getIncrementerName()  +  " Reaping Thread");
-					reapingThread.setDaemon(true);
-					reapingThread.start();
-					nextReapTime = getReapTime();
-				}
-			}
-			catch (SQLException ex) {
-				throw new DataAccessResourceFailureException("Could not increment identity", ex);
-			}
-			finally {
-				JdbcUtils.closeStatement(stmt);
-				DataSourceUtils.releaseConnection(con, getDataSource());
-			}
+	private ScheduledIdentityReaper getReaper() {
+		// Refills are serialized, so the reaper is only ever created by one thread.
+		if (reaper == null) {
+			reaper = createReaper(reaperScheduler != null ? reaperScheduler : SharedReaperScheduler.INSTANCE);
+			reaper.setInterval(Duration.ofSeconds(reaperIntervalSeconds));
+			reaper.setBatchSize(reaperBatchSize);
 		}
-		return this.valueCache[this.nextValueIndex++];
+		return reaper;
 	}
 
-	private long getReapTime() {
-		return System.currentTimeMillis() + (reaperIntervalSeconds * 1000);
+	/**
+	 * Create the reaper of the sequence table, subclasses can override this to customize the delete statement.
+	 */
+	protected ScheduledIdentityReaper createReaper(TaskScheduler scheduler) {
+		return new ScheduledIdentityReaper(getDataSource(), getIncrementerName(), getColumnName(), scheduler);
+	}
+
+	/**
+	 * Stop reaping the sequence table, typically when the application shuts down.
+	 */
+	public void stopReaper() {
+		if (reaper != null) {
+			reaper.stop();
+		}
 	}
 
 	public void setReaperInternalSeconds(int reaperInternalSeconds) {
 		this.reaperIntervalSeconds = reaperInternalSeconds;
 	}
-	
-	private class ReapOldValues implements Runnable {
-		
-		@Override
-		public void run() {
-			Connection con = DataSourceUtils.getConnection(getDataSource());
-			Statement stmt = null;
-			try {
-				stmt = con.createStatement();
-				DataSourceUtils.applyTransactionTimeout(stmt, getDataSource());
-				stmt.executeUpdate("DELETE FROM " + getIncrementerName());
-			}
-			catch (SQLException ex) {
-				throw new DataAccessResourceFailureException("Could not delete old identity values", ex);
-			}
-			finally {
-				JdbcUtils.closeStatement(stmt);
-				DataSourceUtils.releaseConnection(con, getDataSource());
-			}			
+
+	/**
+	 * Set the maximum number of rows deleted by one statement of the reaper, defaults to 1000.
+	 */
+	public void setReaperBatchSize(int reaperBatchSize) {
+		this.reaperBatchSize = reaperBatchSize;
+	}
+
+	/**
+	 * Set the scheduler that runs the reaper, by default a daemon scheduler shared by all incrementers is used.
+	 */
+	public void setReaperScheduler(TaskScheduler reaperScheduler) {
+		this.reaperScheduler = reaperScheduler;
+	}
+
+	@Override
+	public long getReaperRunCount() {
+		return (reaper != null ? reaper.getRunCount() : 0);
+	}
+
+	@Override
+	public long getReapedRowCount() {
+		return (reaper != null ? reaper.getRowCount() : 0);
+	}
+
+	private static final class SharedReaperScheduler {
+
+		private static final ThreadPoolTaskScheduler INSTANCE = new ThreadPoolTaskScheduler();
+
+		static {
+			INSTANCE.setPoolSize(1);
+			INSTANCE.setDaemon(true);
+			INSTANCE.setThreadNamePrefix("IncrementerReaper-");
+			INSTANCE.initialize();
 		}
 	}
 }
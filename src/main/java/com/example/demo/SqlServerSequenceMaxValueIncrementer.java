@@ -16,8 +16,25 @@
 
 package com.example.demo;
 
+import java.nio.LongBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
 import javax.sql.DataSource;
 
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.incrementer.AbstractSequenceMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
 
@@ -28,9 +45,32 @@ import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer
  * database sequences introduced in SQL Server 2012. For older versions of SQL Server (2008 and older,) the
  * {@link SqlServerMaxValueIncrementer} can be used to generate values from a dedicated sequence table.
  *
+ * <p>Every value costs a query, except that the bulk methods reserve all the requested values with a single call to
+ * {@code sp_sequence_get_range}. The number of queries and the time spent in them are available through
+ * {@link #getQueryCount()} and {@link #getQueryNanos()}.
+ *
+ * <p>If a {@link RefillRetryPolicy} is set, a query chosen as a deadlock victim or timed out on a lock is retried.
+ *
+ * <p>Asynchronous requests are coalesced: while one range is being reserved for them, further requests are queued
+ * and the next round trip reserves a single range covering all of them.
+ *
  * @author Tyler Van Gorder
  */
-public class SqlServerSequenceMaxValueIncrementer extends AbstractSequenceMaxValueIncrementer {
+public class SqlServerSequenceMaxValueIncrementer extends AbstractSequenceMaxValueIncrementer implements BulkIncrementer, AsyncIncrementer {
+
+	private final LongAdder queryCount = new LongAdder();
+
+	private final LongAdder queryNanos = new LongAdder();
+
+	private final LongAdder servedCount = new LongAdder();
+
+	private Executor asyncExecutor = Runnable::run;
+
+	private RefillRetryPolicy retryPolicy;
+
+	private final Queue<PendingRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+
+	private final AtomicBoolean requestsInFlight = new AtomicBoolean();
 
 	/**
 	 * Default constructor for bean property style usage.
@@ -49,6 +89,184 @@ public class SqlServerSequenceMaxValueIncrementer extends AbstractSequenceMaxVal
 		super(dataSource, incrementerName);
 	}
 
+	/**
+	 * Set the policy that retries a query chosen as a deadlock victim or timed out on a lock, by default a failed
+	 * query is passed on to the caller.
+	 */
+	public void setRetryPolicy(RefillRetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public RefillRetryPolicy getRetryPolicy() {
+		return this.retryPolicy;
+	}
+
+	@Override
+	protected long getNextKey() {
+		long start = System.nanoTime();
+		long value = (this.retryPolicy != null ? this.retryPolicy.execute(this::queryNextKey) : queryNextKey());
+		this.queryNanos.add(System.nanoTime() - start);
+		this.queryCount.increment();
+		this.servedCount.increment();
+		return value;
+	}
+
+	private long queryNextKey() {
+		return super.getNextKey();
+	}
+
+	@Override
+	public void nextLongValues(long[] target, int offset, int length) {
+		if (length > 0) {
+			reserveRange(length).copyTo(0, target, offset, length);
+		}
+	}
+
+	@Override
+	public void nextLongValues(LongBuffer target) {
+		if (target.hasRemaining()) {
+			IdBlock range = reserveRange(target.remaining());
+			for (int i = 0; i < range.size(); i++) {
+				target.put(range.valueAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Set the executor that reserves the values of asynchronous requests, by default the thread of the caller that
+	 * finds no reservation in flight does it.
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	@Override
+	public CompletableFuture<Long> nextValueAsync() {
+		return nextValuesAsync(1).thenApply(values -> values[0]);
+	}
+
+	@Override
+	public CompletableFuture<long[]> nextValuesAsync(int count) {
+		PendingRequest request = new PendingRequest(count);
+		this.pendingRequests.add(request);
+		if (this.requestsInFlight.compareAndSet(false, true)) {
+			try {
+				this.asyncExecutor.execute(this::serveRequests);
+			}
+			catch (RuntimeException ex) {
+				this.requestsInFlight.set(false);
+				request.future.completeExceptionally(ex);
+			}
+		}
+		return request.future;
+	}
+
+	private void serveRequests() {
+		for (;;) {
+			List<PendingRequest> batch = new ArrayList<>();
+			int total = 0;
+			for (PendingRequest request = this.pendingRequests.poll(); request != null; request = this.pendingRequests.poll()) {
+				batch.add(request);
+				total += request.count;
+			}
+			try {
+				if (total > 0) {
+					IdBlock range = reserveRange(total);
+					int index = 0;
+					for (PendingRequest request : batch) {
+						long[] values = new long[request.count];
+						range.copyTo(index, values, 0, request.count);
+						index += request.count;
+						request.future.complete(values);
+					}
+				}
+			}
+			catch (RuntimeException ex) {
+				batch.forEach(request -> request.future.completeExceptionally(ex));
+			}
+			finally {
+				this.requestsInFlight.set(false);
+			}
+			// A request queued after the poll above found the flight still running and relies on this thread to serve
+			// it, unless another thread has started a flight of its own since.
+			if (this.pendingRequests.isEmpty() || !this.requestsInFlight.compareAndSet(false, true)) {
+				break;
+			}
+		}
+	}
+
+	private IdBlock reserveRange(int size) {
+		return (this.retryPolicy != null ? this.retryPolicy.execute(() -> queryRange(size)) : queryRange(size));
+	}
+
+	private IdBlock queryRange(int size) {
+		long start = System.nanoTime();
+		Connection con = DataSourceUtils.getConnection(getDataSource());
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			DataSourceUtils.applyTransactionTimeout(stmt, getDataSource());
+			rs = stmt.executeQuery(getSequenceRangeQuery(size));
+			if (!rs.next()) {
+				throw new DataAccessResourceFailureException("Sequence range query did not return a result");
+			}
+			IdBlock range = IdBlock.range(rs.getLong(1), rs.getLong(2), size);
+			this.servedCount.add(size);
+			return range;
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not reserve sequence range", ex);
+		}
+		finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			DataSourceUtils.releaseConnection(con, getDataSource());
+			this.queryNanos.add(System.nanoTime() - start);
+			this.queryCount.increment();
+		}
+	}
+
+	/**
+	 * Return the query used to reserve a range of values for the bulk methods, see
+	 * {@link SqlServerSequenceRangeMaxValueIncrementer#getSequenceRangeQuery(int)}.
+	 */
+	protected String getSequenceRangeQuery(int rangeSize) {
+		return SqlServerSequenceRangeMaxValueIncrementer.sequenceRangeQuery(getIncrementerName(), rangeSize);
+	}
+
+	/**
+	 * Return the number of sequence queries run so far.
+	 */
+	public long getQueryCount() {
+		return this.queryCount.sum();
+	}
+
+	/**
+	 * Return the number of values served so far.
+	 */
+	public long getServedCount() {
+		return this.servedCount.sum();
+	}
+
+	/**
+	 * Return the total time spent in sequence queries, in nanoseconds.
+	 */
+	public long getQueryNanos() {
+		return this.queryNanos.sum();
+	}
+
+	private static final class PendingRequest {
+
+		private final int count;
+
+		private final CompletableFuture<long[]> future = new CompletableFuture<>();
+
+		private PendingRequest(int count) {
+			this.count = count;
+		}
+	}
+
 	@Override
 	protected String getSequenceQuery() {
 		return "select NEXT VALUE for " + getIncrementerName();
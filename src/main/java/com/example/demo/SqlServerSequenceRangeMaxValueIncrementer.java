@@ -0,0 +1,156 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.incrementer.AbstractDataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * {@link DataFieldMaxValueIncrementer} that reserves a whole range of values from a MS SQL Server sequence
+ * in a single round trip and then serves the values from memory.
+ *
+ * <p>{@link SqlServerSequenceMaxValueIncrementer} issues a {@code NEXT VALUE FOR} query for every value. This
+ * incrementer instead calls {@code sp_sequence_get_range} to reserve "cacheSize" values at once. The values in a
+ * range are computed from the first value and the increment of the sequence, so the sequence itself does not need to
+ * be altered. Like any cached incrementer, values that were reserved but not served before the application stops are
+ * never handed out, the maximum hole size in numbering is consequently the value of cacheSize.
+ *
+ * <p>Cycling sequences are not supported, a range that wraps around the maximum value of the sequence would
+ * produce values that are not in order.
+ *
+ * @author Tyler Van Gorder
+ * @see SqlServerSequenceMaxValueIncrementer
+ */
+public class SqlServerSequenceRangeMaxValueIncrementer extends AbstractDataFieldMaxValueIncrementer implements BlockCachingIncrementer {
+
+	/** The number of values to reserve with each call to the database */
+	private int cacheSize = 1;
+
+	/** The current range of values */
+	private final IdBlockCache valueCache = new IdBlockCache(this::reserveRange, this::getCacheSize);
+
+	private SequenceRangeBatch rangeBatch;
+
+	/**
+	 * Default constructor for bean property style usage.
+	 * @see #setDataSource
+	 * @see #setIncrementerName
+	 * @see #setCacheSize
+	 */
+	public SqlServerSequenceRangeMaxValueIncrementer() {
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param dataSource the DataSource to use
+	 * @param incrementerName the name of the sequence to use
+	 * @param cacheSize the number of values to reserve with each call to the database
+	 */
+	public SqlServerSequenceRangeMaxValueIncrementer(DataSource dataSource, String incrementerName, int cacheSize) {
+		super(dataSource, incrementerName);
+		setCacheSize(cacheSize);
+	}
+
+	/**
+	 * Set the number of values to reserve from the sequence with each call to the database.
+	 */
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize < 1) {
+			throw new IllegalArgumentException("Property 'cacheSize' must be greater than zero");
+		}
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Return the number of values to reserve from the sequence with each call to the database.
+	 */
+	public int getCacheSize() {
+		return this.cacheSize;
+	}
+
+	/**
+	 * Reserve the ranges through the given batch, together with the ranges of other sequences, see
+	 * {@link SequenceRangeBatch#register}.
+	 */
+	void setRangeBatch(SequenceRangeBatch rangeBatch) {
+		this.rangeBatch = rangeBatch;
+	}
+
+	@Override
+	public IdBlockCache getValueCache() {
+		return this.valueCache;
+	}
+
+	@Override
+	protected long getNextKey() throws DataAccessException {
+		return this.valueCache.next();
+	}
+
+	private IdBlock reserveRange(int size) {
+		if (this.rangeBatch != null) {
+			return this.rangeBatch.reserve(this, size);
+		}
+		Connection con = DataSourceUtils.getConnection(getDataSource());
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			DataSourceUtils.applyTransactionTimeout(stmt, getDataSource());
+			rs = stmt.executeQuery(getSequenceRangeQuery(size));
+			if (!rs.next()) {
+				throw new DataAccessResourceFailureException("Sequence range query did not return a result");
+			}
+			return IdBlock.range(rs.getLong(1), rs.getLong(2), size);
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not reserve sequence range", ex);
+		}
+		finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			DataSourceUtils.releaseConnection(con, getDataSource());
+		}
+	}
+
+	/**
+	 * Return the query used to reserve a range of values. The query must return a single row with the first value
+	 * of the range in the first column and the increment of the sequence in the second column.
+	 * @param rangeSize the number of values to reserve
+	 */
+	protected String getSequenceRangeQuery(int rangeSize) {
+		return sequenceRangeQuery(getIncrementerName(), rangeSize);
+	}
+
+	static String sequenceRangeQuery(String sequenceName, int rangeSize) {
+		return "set nocount on;"
+				+ " declare @range_first_value sql_variant, @sequence_increment sql_variant;"
+				+ " exec sp_sequence_get_range @sequence_name = N'" + sequenceName + "', @range_size = " + rangeSize + ","
+				+ " @range_first_value = @range_first_value output, @sequence_increment = @sequence_increment output;"
+				+ " select cast(@range_first_value as bigint), cast(@sequence_increment as bigint)";
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Records the outcome of the calls made by one stress test thread: the latency of each successful call, the values
+ * that were returned and the failures by cause. A recorder must only be used by a single thread, the recorders of all
+ * threads are combined into a {@link StressReport} once the threads are done.
+ *
+ * @author Tyler Van Gorder
+ */
+public class StressRecorder {
+
+	private final Histogram latencies = new Histogram(TimeUnit.HOURS.toNanos(1), 3);
+
+	private final Map<FailureCause, Long> failures = new EnumMap<>(FailureCause.class);
+
+	private long[] values;
+
+	private int valueCount;
+
+	public StressRecorder(int expectedCalls) {
+		this.values = new long[Math.max(16, expectedCalls)];
+	}
+
+	public void success(long value, long latencyNanos) {
+		this.latencies.recordValue(Math.min(latencyNanos, this.latencies.getHighestTrackableValue()));
+		if (this.valueCount == this.values.length) {
+			this.values = Arrays.copyOf(this.values, this.values.length * 2);
+		}
+		this.values[this.valueCount++] = value;
+	}
+
+	public void failure(Throwable failure) {
+		this.failures.merge(FailureCause.of(failure), 1L, Long::sum);
+	}
+
+	Histogram getLatencies() {
+		return this.latencies;
+	}
+
+	Map<FailureCause, Long> getFailures() {
+		return this.failures;
+	}
+
+	long[] getValues() {
+		return Arrays.copyOf(this.values, this.valueCount);
+	}
+
+	/**
+	 * Write the recorded latencies, failures and values, so that the recorders of several processes can be combined
+	 * into one report.
+	 * @see #readFrom(DataInput)
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(this.latencies.getNeededByteBufferCapacity());
+		int length = this.latencies.encodeIntoCompressedByteBuffer(buffer);
+		out.writeInt(length);
+		out.write(buffer.array(), 0, length);
+		out.writeInt(this.failures.size());
+		for (Map.Entry<FailureCause, Long> failure : this.failures.entrySet()) {
+			out.writeUTF(failure.getKey().name());
+			out.writeLong(failure.getValue());
+		}
+		out.writeInt(this.valueCount);
+		for (int i = 0; i < this.valueCount; i++) {
+			out.writeLong(this.values[i]);
+		}
+	}
+
+	/**
+	 * Read a recorder written by {@link #writeTo(DataOutput)}.
+	 */
+	public static StressRecorder readFrom(DataInput in) throws IOException {
+		byte[] encoded = new byte[in.readInt()];
+		in.readFully(encoded);
+		Histogram latencies;
+		try {
+			latencies = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0);
+		}
+		catch (DataFormatException ex) {
+			throw new IOException("Could not decode the latencies", ex);
+		}
+		int failureCount = in.readInt();
+		Map<FailureCause, Long> failures = new EnumMap<>(FailureCause.class);
+		for (int i = 0; i < failureCount; i++) {
+			failures.put(FailureCause.valueOf(in.readUTF()), in.readLong());
+		}
+		int valueCount = in.readInt();
+		StressRecorder recorder = new StressRecorder(valueCount);
+		for (int i = 0; i < valueCount; i++) {
+			recorder.values[i] = in.readLong();
+		}
+		recorder.valueCount = valueCount;
+		recorder.latencies.add(latencies);
+		recorder.failures.putAll(failures);
+		return recorder;
+	}
+}
@@ -0,0 +1,186 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The combined results of a stress run: throughput, latency percentiles, failures by cause, the number of
+ * duplicate values served across all threads and the number of refills the incrementers retried.
+ *
+ * <p>The report is written as a JSON document per run and as a row appended to a CSV file, so the runs of different
+ * strategies with the same settings can be compared side by side.
+ *
+ * @author Tyler Van Gorder
+ */
+public class StressReport {
+
+	private static final String CSV_HEADER = "strategy,mode,targetRate,threads,calls,successes,elapsedMillis,throughputPerSecond,"
+			+ "p50Micros,p99Micros,p999Micros,maxMicros,duplicates,deadlockVictims,lockTimeouts,queryTimeouts,"
+			+ "connectionFailures,otherFailures,refillRetries";
+
+	private final String strategy;
+	private final LoadMode mode;
+	private final double targetRate;
+	private final int threads;
+	private final long elapsedNanos;
+	private final Histogram latencies = new Histogram(TimeUnit.HOURS.toNanos(1), 3);
+	private final Map<FailureCause, Long> failures = new EnumMap<>(FailureCause.class);
+	private final long duplicates;
+	private long refillRetries;
+
+	/**
+	 * @param strategy the name of the strategy that was measured
+	 * @param mode how the load was generated
+	 * @param targetRate the number of calls started per second for an open loop, 0 for a closed loop
+	 * @param recorders the recorders of all the threads that made calls
+	 * @param elapsedNanos the duration of the run
+	 */
+	public StressReport(String strategy, LoadMode mode, double targetRate, List<StressRecorder> recorders, long elapsedNanos) {
+		this.strategy = strategy;
+		this.mode = mode;
+		this.targetRate = targetRate;
+		this.threads = recorders.size();
+		this.elapsedNanos = elapsedNanos;
+		for (FailureCause cause : FailureCause.values()) {
+			this.failures.put(cause, 0L);
+		}
+		int valueCount = 0;
+		for (StressRecorder recorder : recorders) {
+			this.latencies.add(recorder.getLatencies());
+			recorder.getFailures().forEach((cause, count) -> this.failures.merge(cause, count, Long::sum));
+			valueCount += recorder.getValues().length;
+		}
+		long[] values = new long[valueCount];
+		int offset = 0;
+		for (StressRecorder recorder : recorders) {
+			long[] recorded = recorder.getValues();
+			System.arraycopy(recorded, 0, values, offset, recorded.length);
+			offset += recorded.length;
+		}
+		this.duplicates = countDuplicates(values);
+	}
+
+	private static long countDuplicates(long[] values) {
+		Arrays.sort(values);
+		long duplicates = 0;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] == values[i - 1]) {
+				duplicates++;
+			}
+		}
+		return duplicates;
+	}
+
+	/**
+	 * Set the number of refills the incrementers retried during the run.
+	 */
+	public void setRefillRetries(long refillRetries) {
+		this.refillRetries = refillRetries;
+	}
+
+	public long getRefillRetries() {
+		return this.refillRetries;
+	}
+
+	public long getSuccesses() {
+		return this.latencies.getTotalCount();
+	}
+
+	public long getFailureCount() {
+		return this.failures.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	public long getDuplicates() {
+		return this.duplicates;
+	}
+
+	public double getThroughputPerSecond() {
+		return (this.elapsedNanos == 0 ? 0 : getSuccesses() * 1e9 / this.elapsedNanos);
+	}
+
+	private double micros(double percentile) {
+		return this.latencies.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	/**
+	 * Write the report as {@code <strategy>-<timestamp>.json} in the given directory and append it to
+	 * {@code stress-results.csv} in the same directory.
+	 */
+	public void write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		Path json = directory.resolve(this.strategy.toLowerCase() + "-" + System.currentTimeMillis() + ".json");
+		try (Writer writer = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+			writer.write(toJson());
+		}
+		Path csv = directory.resolve("stress-results.csv");
+		boolean newFile = !Files.exists(csv);
+		try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			if (newFile) {
+				writer.write(CSV_HEADER + "\n");
+			}
+			writer.write(toCsvRow() + "\n");
+		}
+	}
+
+	String toJson() {
+		StringBuilder json = new StringBuilder(512);
+		json.append("{\n");
+		json.append("  \"strategy\": \"").append(this.strategy).append("\",\n");
+		json.append("  \"mode\": \"").append(this.mode).append("\",\n");
+		json.append("  \"targetRate\": ").append(format(this.targetRate)).append(",\n");
+		json.append("  \"threads\": ").append(this.threads).append(",\n");
+		json.append("  \"calls\": ").append(getSuccesses() + getFailureCount()).append(",\n");
+		json.append("  \"successes\": ").append(getSuccesses()).append(",\n");
+		json.append("  \"elapsedMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos)).append(",\n");
+		json.append("  \"throughputPerSecond\": ").append(format(getThroughputPerSecond())).append(",\n");
+		json.append("  \"latencyMicros\": { \"p50\": ").append(format(micros(50))).append(", \"p99\": ").append(format(micros(99)))
+				.append(", \"p999\": ").append(format(micros(99.9))).append(", \"max\": ").append(format(this.latencies.getMaxValue() / 1000.0))
+				.append(" },\n");
+		json.append("  \"duplicates\": ").append(this.duplicates).append(",\n");
+		json.append("  \"failures\": {");
+		String separator = " ";
+		for (Map.Entry<FailureCause, Long> failure : this.failures.entrySet()) {
+			json.append(separator).append('"').append(failure.getKey()).append("\": ").append(failure.getValue());
+			separator = ", ";
+		}
+		json.append(" },\n");
+		json.append("  \"refillRetries\": ").append(this.refillRetries).append("\n");
+		json.append("}\n");
+		return json.toString();
+	}
+
+	String toCsvRow() {
+		return this.strategy + "," + this.mode + "," + format(this.targetRate) + "," + this.threads + ","
+				+ (getSuccesses() + getFailureCount()) + "," + getSuccesses() + ","
+				+ TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos) + "," + format(getThroughputPerSecond()) + ","
+				+ format(micros(50)) + "," + format(micros(99)) + "," + format(micros(99.9)) + ","
+				+ format(this.latencies.getMaxValue() / 1000.0) + "," + this.duplicates + ","
+				+ this.failures.get(FailureCause.DEADLOCK_VICTIM) + "," + this.failures.get(FailureCause.LOCK_TIMEOUT) + ","
+				+ this.failures.get(FailureCause.QUERY_TIMEOUT) + "," + this.failures.get(FailureCause.CONNECTION_FAILURE) + ","
+				+ this.failures.get(FailureCause.OTHER) + "," + this.refillRetries;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"%s %s (target %.1f/s): %d threads, %d successes, %d failures %s, %.1f/s, p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus, %d duplicates, %d refill retries",
+				this.strategy, this.mode, this.targetRate, this.threads, getSuccesses(), getFailureCount(), this.failures, getThroughputPerSecond(),
+				micros(50), micros(99), micros(99.9), this.latencies.getMaxValue() / 1000.0, this.duplicates, this.refillRetries);
+	}
+}
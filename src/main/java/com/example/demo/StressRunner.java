@@ -1,11 +1,22 @@
 package com.example.demo;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.task.TaskExecutor;
 
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+
 @ConfigurationProperties("example")
 public class StressRunner implements CommandLineRunner {
 
@@ -13,25 +24,92 @@ public class StressRunner implements CommandLineRunner {
 
 	private int stressTestThreadCount = 12;
 	private int samplesPerThread = 100;
+
+	// In measurement mode the values are not logged, instead the latencies, failures and duplicates are recorded
+	// and reported once all threads are done.
+	private boolean measure = false;
+	private Path reportDirectory = Paths.get("target", "stress-reports");
+	private IncrementStrategy incrementStrategy = IncrementStrategy.DEFAULT_NOT_SHARED;
+	// Only used to name the reports, the fast path itself is picked by the DAO bean that is injected.
+	private boolean fastPath = false;
+
+	// In open loop mode calls are issued at each of the target rates in turn (a ramp), for step-duration each, after a
+	// warm-up at the first rate. Every step is reported separately.
+	private LoadMode loadMode = LoadMode.CLOSED_LOOP;
+	private List<Double> targetRates = new ArrayList<>(Collections.singletonList(1000.0));
+	private Duration warmUp = Duration.ofSeconds(5);
+	private Duration stepDuration = Duration.ofSeconds(10);
 	
 	private final TaskExecutor taskExecutor;
 	private final IncrementMeDao incrementMeDao;
+	private final MeterRegistry meterRegistry;
 	
-	public StressRunner(TaskExecutor taskExecutor, IncrementMeDao incrementMeDao) {
+	public StressRunner(TaskExecutor taskExecutor, IncrementMeDao incrementMeDao, MeterRegistry meterRegistry) {
 		this.taskExecutor = taskExecutor;
 		this.incrementMeDao = incrementMeDao;
+		this.meterRegistry = meterRegistry;
 	}
 	
 	@Override
 	public void run(String... args) throws Exception {
 
+		if (loadMode == LoadMode.OPEN_LOOP) {
+			runOpenLoop();
+			return;
+		}
+
 		logger.info("Starting {} Threads",  stressTestThreadCount); 
+		if (!measure) {
+			for (int index = 0; index < stressTestThreadCount; index++) {
+				taskExecutor.execute(new CallIncrementer(samplesPerThread));
+			}
+			return;
+		}
+
+		List<StressRecorder> recorders = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(stressTestThreadCount);
+		long retries = refillRetryCount();
+		long start = System.nanoTime();
 		for (int index = 0; index < stressTestThreadCount; index++) {
-			taskExecutor.execute(new CallIncrementer(samplesPerThread));
+			StressRecorder recorder = new StressRecorder(samplesPerThread);
+			recorders.add(recorder);
+			taskExecutor.execute(new MeasureIncrementer(samplesPerThread, recorder, done));
 		}
+		done.await();
+		StressReport report = new StressReport(reportName(), LoadMode.CLOSED_LOOP, 0, recorders, System.nanoTime() - start);
+		report.setRefillRetries(refillRetryCount() - retries);
+		logger.info("Stress results {}", report);
+		report.write(reportDirectory);
+		logger.info("Stress report written to {}", reportDirectory.toAbsolutePath());
+	}
 
+	private void runOpenLoop() throws Exception {
+		OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(taskExecutor, incrementMeDao);
+		logger.info("Warming up at {} calls/s for {}", targetRates.get(0), warmUp);
+		generator.run(reportName(), targetRates.get(0), warmUp);
+		for (double targetRate : targetRates) {
+			logger.info("Running at {} calls/s for {}", targetRate, stepDuration);
+			long retries = refillRetryCount();
+			StressReport report = generator.run(reportName(), targetRate, stepDuration);
+			report.setRefillRetries(refillRetryCount() - retries);
+			logger.info("Stress results {}", report);
+			report.write(reportDirectory);
+		}
+		logger.info("Stress reports written to {}", reportDirectory.toAbsolutePath());
 	}
 
+	private String reportName() {
+		return (fastPath ? incrementStrategy.name() + "-FAST_PATH" : incrementStrategy.name());
+	}
+
+	// The retries of all incrementers, as published by IncrementerMetrics.
+	private long refillRetryCount() {
+		double retries = 0;
+		for (FunctionTimer timer : meterRegistry.find("incrementer.refill.retries").functionTimers()) {
+			retries += timer.count();
+		}
+		return (long) retries;
+	}
 
 	private class CallIncrementer implements Runnable {
 
@@ -44,7 +122,7 @@ public class StressRunner implements CommandLineRunner {
 			for (int index=0; index < sampleCount; index++) {
 			
 				try {
-					logger.info("Got Value : {}", incrementMeDao.getNextValue()); 
+					logger.info("Got Value : {}", incrementMeDao.getNextLongValue()); 
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
@@ -52,6 +130,36 @@ public class StressRunner implements CommandLineRunner {
 		}
 	}
 
+	private class MeasureIncrementer implements Runnable {
+
+		private final int sampleCount;
+		private final StressRecorder recorder;
+		private final CountDownLatch done;
+
+		private MeasureIncrementer(int sampleCount, StressRecorder recorder, CountDownLatch done) {
+			this.sampleCount = sampleCount;
+			this.recorder = recorder;
+			this.done = done;
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int index = 0; index < sampleCount; index++) {
+					long start = System.nanoTime();
+					try {
+						long value = incrementMeDao.getNextLongValue();
+						recorder.success(value, System.nanoTime() - start);
+					} catch (Exception e) {
+						recorder.failure(e);
+					}
+				}
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+
 
 	public void setStressTestThreadCount(int stressTestThreadCount) {
 		this.stressTestThreadCount = stressTestThreadCount;
@@ -60,4 +168,36 @@ public class StressRunner implements CommandLineRunner {
 	public void setSamplesPerThread(int samplesPerThread) {
 		this.samplesPerThread = samplesPerThread;
 	}
+
+	public void setMeasure(boolean measure) {
+		this.measure = measure;
+	}
+
+	public void setReportDirectory(Path reportDirectory) {
+		this.reportDirectory = reportDirectory;
+	}
+
+	public void setIncrementStrategy(IncrementStrategy incrementStrategy) {
+		this.incrementStrategy = incrementStrategy;
+	}
+
+	public void setFastPath(boolean fastPath) {
+		this.fastPath = fastPath;
+	}
+
+	public void setLoadMode(LoadMode loadMode) {
+		this.loadMode = loadMode;
+	}
+
+	public void setTargetRates(List<Double> targetRates) {
+		this.targetRates = targetRates;
+	}
+
+	public void setWarmUp(Duration warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	public void setStepDuration(Duration stepDuration) {
+		this.stepDuration = stepDuration;
+	}
 }
@@ -0,0 +1,285 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * A lease on one row of a worker lease table, which hands out the worker ids of the
+ * {@link SnowflakeMaxValueIncrementer}s of every process that shares the database:
+ *
+ * <pre class="code">create table EXAMPLE_WORKER_LEASE (
+ *   WORKER_ID int primary key,
+ *   OWNER varchar(100) null,
+ *   EXPIRES_AT datetime2 null,
+ *   LAST_TIMESTAMP bigint not null default 0)</pre>
+ *
+ * The table holds one row per worker id, inserted up front. A row is free when it has no expiry or when its lease
+ * expired more than a grace period ago. {@link #acquire()} picks the lowest free row and claims it with an update that
+ * only succeeds while the row is still free, so two processes racing for the same row cannot both win. The expiry is
+ * always computed from the clock of the database server, the clocks of the processes never have to agree on it.
+ *
+ * <p>The "LAST_TIMESTAMP" column records the highest timestamp the holder may use, and a new holder never issues ids
+ * at or below it. While a lease is held, the column holds an upper bound, the holder's timestamp when it acquired or
+ * renewed the lease plus the duration of the lease and the grace period, and the holder never uses a timestamp beyond
+ * it. A holder that crashes therefore leaves a bound above every id it may have issued, whatever the clock of the
+ * next holder says. A holder that releases its lease records the last timestamp it actually used.
+ *
+ * <p>Each method runs its statement on its own connection and outside of any transaction, committing it right away,
+ * so a lease taken while the caller has a transaction survives that transaction rolling back. Instances are not thread
+ * safe, the {@link SnowflakeMaxValueIncrementer} serializes all calls.
+ *
+ * @author Tyler Van Gorder
+ */
+public class WorkerIdLease {
+
+	private final DataSource dataSource;
+
+	private final String tableName;
+
+	private final String owner = UUID.randomUUID().toString();
+
+	private Duration duration = Duration.ofSeconds(30);
+
+	private Duration gracePeriod = Duration.ofSeconds(1);
+
+	private int workerId = -1;
+
+	private long lastTimestamp;
+
+	private long timestampBound;
+
+	/**
+	 * @param dataSource the DataSource of the lease table
+	 * @param tableName the name of the lease table
+	 */
+	public WorkerIdLease(DataSource dataSource, String tableName) {
+		this.dataSource = dataSource;
+		this.tableName = tableName;
+	}
+
+	/**
+	 * Set how long a lease lasts after it has been acquired or renewed, defaults to 30 seconds.
+	 */
+	public void setDuration(Duration duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Set how long an expired lease stays reserved for its previous holder, defaults to 1 second. It must cover the
+	 * time the previous holder's ids may run ahead of its clock.
+	 */
+	public void setGracePeriod(Duration gracePeriod) {
+		this.gracePeriod = gracePeriod;
+	}
+
+	public Duration getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Return the leased worker id, -1 while no row is leased.
+	 */
+	public int getWorkerId() {
+		return this.workerId;
+	}
+
+	/**
+	 * Return the highest timestamp the previous holder of the worker id may have used.
+	 */
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	/**
+	 * Return the highest timestamp this holder may use, as recorded in the lease table.
+	 */
+	public long getTimestampBound() {
+		return this.timestampBound;
+	}
+
+	/**
+	 * Lease the lowest free worker id.
+	 * @param currentTimestamp the current timestamp of the holder, the bound of the lease is computed from it
+	 * @return the worker id
+	 * @throws DataAccessResourceFailureException if every worker id is leased
+	 */
+	public int acquire(long currentTimestamp) {
+		// Not through DataSourceUtils, which would hand out the connection bound to the caller's transaction.
+		Connection con = null;
+		PreparedStatement select = null;
+		PreparedStatement update = null;
+		ResultSet rs = null;
+		try {
+			con = this.dataSource.getConnection();
+			boolean autoCommit = con.getAutoCommit();
+			try {
+				select = con.prepareStatement(getSelectFreeStatement());
+				select.setLong(1, -this.gracePeriod.toMillis());
+				update = con.prepareStatement(getAcquireStatement());
+				// Another process may claim or release the row between the select and the update, then try again.
+				while (true) {
+					rs = select.executeQuery();
+					if (!rs.next()) {
+						throw new DataAccessResourceFailureException("No free worker id left in " + this.tableName);
+					}
+					int candidate = rs.getInt(1);
+					long candidateTimestamp = rs.getLong(2);
+					JdbcUtils.closeResultSet(rs);
+					long bound = bound(Math.max(candidateTimestamp, currentTimestamp));
+					update.setString(1, this.owner);
+					update.setLong(2, this.duration.toMillis());
+					update.setLong(3, bound);
+					update.setInt(4, candidate);
+					update.setLong(5, candidateTimestamp);
+					update.setLong(6, -this.gracePeriod.toMillis());
+					if (update.executeUpdate() == 1) {
+						if (!autoCommit) {
+							con.commit();
+						}
+						this.workerId = candidate;
+						this.lastTimestamp = candidateTimestamp;
+						this.timestampBound = bound;
+						return candidate;
+					}
+				}
+			}
+			catch (SQLException | RuntimeException ex) {
+				if (!autoCommit) {
+					con.rollback();
+				}
+				throw ex;
+			}
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not lease a worker id from " + this.tableName, ex);
+		}
+		finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(select);
+			JdbcUtils.closeStatement(update);
+			JdbcUtils.closeConnection(con);
+		}
+	}
+
+	/**
+	 * Extend the lease by its duration and record a new bound from the current timestamp of the holder.
+	 * @param currentTimestamp the current timestamp of the holder, at least the last timestamp it used
+	 * @return {@code false} if the worker id has been leased by another process in the meantime
+	 */
+	public boolean renew(long currentTimestamp) {
+		long bound = Math.max(this.timestampBound, bound(currentTimestamp));
+		if (update(getRenewStatement(), bound, this.duration.toMillis()) != 1) {
+			return false;
+		}
+		this.timestampBound = bound;
+		return true;
+	}
+
+	// Covers every timestamp the holder may use until the lease expires, including the values ahead of its clock.
+	private long bound(long timestamp) {
+		return timestamp + this.duration.toMillis() + this.gracePeriod.toMillis();
+	}
+
+	/**
+	 * Give the worker id back, recording the highest timestamp used.
+	 */
+	public void release(long lastTimestamp) {
+		if (this.workerId >= 0) {
+			update(getReleaseStatement(), lastTimestamp, null);
+			this.workerId = -1;
+		}
+	}
+
+	private int update(String sql, long lastTimestamp, Long durationMillis) {
+		Connection con = null;
+		PreparedStatement stmt = null;
+		try {
+			con = this.dataSource.getConnection();
+			boolean autoCommit = con.getAutoCommit();
+			try {
+				stmt = con.prepareStatement(sql);
+				int index = 1;
+				if (durationMillis != null) {
+					stmt.setLong(index++, durationMillis);
+				}
+				stmt.setLong(index++, lastTimestamp);
+				stmt.setInt(index++, this.workerId);
+				stmt.setString(index, this.owner);
+				int count = stmt.executeUpdate();
+				if (!autoCommit) {
+					con.commit();
+				}
+				return count;
+			}
+			catch (SQLException | RuntimeException ex) {
+				if (!autoCommit) {
+					con.rollback();
+				}
+				throw ex;
+			}
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Could not update the lease of worker id " + this.workerId, ex);
+		}
+		finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(con);
+		}
+	}
+
+	/**
+	 * Return the expression of the database server's current time, {@code sysutcdatetime()} so that daylight saving
+	 * time changes do not shorten any lease.
+	 */
+	protected String getCurrentTimeExpression() {
+		return "sysutcdatetime()";
+	}
+
+	/**
+	 * Return the query of the lowest free worker id and its last timestamp, the parameter is the negated grace period
+	 * in milliseconds.
+	 */
+	protected String getSelectFreeStatement() {
+		return "select top 1 WORKER_ID, LAST_TIMESTAMP from " + this.tableName + " where " + getFreeCondition() + " order by WORKER_ID";
+	}
+
+	/**
+	 * Return the update that claims a worker id while it is free and its last timestamp has not changed, the
+	 * parameters are the owner, the duration in milliseconds, the timestamp bound, the worker id, the last timestamp
+	 * read and the negated grace period in milliseconds.
+	 */
+	protected String getAcquireStatement() {
+		return "update " + this.tableName + " set OWNER = ?, EXPIRES_AT = dateadd(millisecond, ?, " + getCurrentTimeExpression()
+				+ "), LAST_TIMESTAMP = ? where WORKER_ID = ? and LAST_TIMESTAMP = ? and (" + getFreeCondition() + ")";
+	}
+
+	/**
+	 * Return the update that extends a lease, the parameters are the duration in milliseconds, the timestamp bound,
+	 * the worker id and the owner.
+	 */
+	protected String getRenewStatement() {
+		return "update " + this.tableName + " set EXPIRES_AT = dateadd(millisecond, ?, " + getCurrentTimeExpression()
+				+ "), LAST_TIMESTAMP = ? where WORKER_ID = ? and OWNER = ?";
+	}
+
+	/**
+	 * Return the update that gives a worker id back, the parameters are the last timestamp, the worker id and the
+	 * owner.
+	 */
+	protected String getReleaseStatement() {
+		return "update " + this.tableName + " set OWNER = null, EXPIRES_AT = null, LAST_TIMESTAMP = ? where WORKER_ID = ? and OWNER = ?";
+	}
+
+	private String getFreeCondition() {
+		return "EXPIRES_AT is null or EXPIRES_AT < dateadd(millisecond, ?, " + getCurrentTimeExpression() + ")";
+	}
+}
@@ -1,2 +1,6 @@
 CREATE SEQUENCE EXAMPLE_REAL_SEQUENCE START WITH 1;
 CREATE TABLE EXAMPLE_SEQ (ID BIGINT IDENTITY);
+CREATE TABLE EXAMPLE_HILO_SEQ (NEXT_VAL BIGINT NOT NULL);
+INSERT INTO EXAMPLE_HILO_SEQ VALUES (1);
+CREATE TABLE EXAMPLE_WORKER_LEASE (WORKER_ID INT NOT NULL PRIMARY KEY, OWNER VARCHAR(100) NULL, EXPIRES_AT DATETIME2 NULL, LAST_TIMESTAMP BIGINT NOT NULL DEFAULT 0);
+INSERT INTO EXAMPLE_WORKER_LEASE (WORKER_ID) SELECT TOP (1024) ROW_NUMBER() OVER (ORDER BY (SELECT NULL)) - 1 FROM sys.all_columns;
@@ -0,0 +1,41 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveBlockSizingPolicyTests {
+
+	private final AdaptiveBlockSizingPolicy policy = new AdaptiveBlockSizingPolicy(10, 100, Duration.ofSeconds(1));
+
+	@Test
+	public void firstBlockUsesMinimumSize() {
+		assertThat(policy.nextBlockSize(-1)).isEqualTo(10);
+	}
+
+	@Test
+	public void growsWhenRefillsComeTooCloseTogether() {
+		assertThat(policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100))).isEqualTo(20);
+		assertThat(policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100))).isEqualTo(40);
+		assertThat(policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100))).isEqualTo(80);
+		assertThat(policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100))).isEqualTo(100);
+	}
+
+	@Test
+	public void keepsSizeNearTheTargetInterval() {
+		policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100));
+		assertThat(policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(1500))).isEqualTo(20);
+	}
+
+	@Test
+	public void shrinksWhenABlockLastsTooLong() {
+		policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100));
+		policy.nextBlockSize(TimeUnit.MILLISECONDS.toNanos(100));
+		assertThat(policy.nextBlockSize(TimeUnit.SECONDS.toNanos(5))).isEqualTo(20);
+		assertThat(policy.nextBlockSize(TimeUnit.SECONDS.toNanos(5))).isEqualTo(10);
+		assertThat(policy.nextBlockSize(TimeUnit.SECONDS.toNanos(5))).isEqualTo(10);
+	}
+}
@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.demo.StandInIncrementers.Backend;
+
+public class AsyncIncrementerTests {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void callersArrivingDuringARefillShareIt() throws Exception {
+		AtomicLong next = new AtomicLong(1);
+		AtomicInteger refills = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		IdBlockCache cache = new IdBlockCache(size -> {
+			refills.incrementAndGet();
+			await(release);
+			return IdBlock.range(next.getAndAdd(size), 1, size);
+		}, () -> 100);
+		cache.setAsyncExecutor(executor);
+
+		List<CompletableFuture<Long>> futures = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(cache.nextAsync());
+		}
+		CompletableFuture<long[]> bulk = cache.nextAsync(30);
+		// None of the callers was blocked by the refill.
+		assertThat(futures).allMatch(future -> !future.isDone());
+		release.countDown();
+
+		Set<Long> values = new HashSet<>();
+		for (CompletableFuture<Long> future : futures) {
+			values.add(future.get(10, TimeUnit.SECONDS));
+		}
+		for (long value : bulk.get(10, TimeUnit.SECONDS)) {
+			values.add(value);
+		}
+		assertThat(values).hasSize(80);
+		assertThat(refills.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void sequenceCoalescesQueuedRequestsIntoOneRange() throws Exception {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:async" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		StandInIncrementers.createH2Schema(dataSource);
+		SqlServerSequenceMaxValueIncrementer incrementer = (SqlServerSequenceMaxValueIncrementer) StandInIncrementers.create(
+				IncrementStrategy.SEQUENCE, Backend.H2, dataSource, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		incrementer.setAsyncExecutor(task -> executor.execute(() -> {
+			await(release);
+			task.run();
+		}));
+
+		List<CompletableFuture<long[]>> futures = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(incrementer.nextValuesAsync(5));
+		}
+		release.countDown();
+
+		Set<Long> values = new HashSet<>();
+		for (CompletableFuture<long[]> future : futures) {
+			for (long value : future.get(10, TimeUnit.SECONDS)) {
+				values.add(value);
+			}
+		}
+		assertThat(values).hasSize(100);
+		assertThat(incrementer.getQueryCount()).isEqualTo(1);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.LongBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.demo.StandInIncrementers.Backend;
+
+public class BulkIncrementerTests {
+
+	@Test
+	public void bulkValuesAreUniqueAcrossThreadsForEveryStrategy() throws Exception {
+		for (IncrementStrategy strategy : IncrementStrategy.values()) {
+			if (strategy == IncrementStrategy.DEFAULT_SHARED || strategy == IncrementStrategy.DEFAULT_NOT_SHARED) {
+				continue;
+			}
+			DriverManagerDataSource dataSource = new DriverManagerDataSource(
+					"jdbc:h2:mem:bulk" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+			StandInIncrementers.createH2Schema(dataSource);
+			BulkIncrementer incrementer = (BulkIncrementer) StandInIncrementers.create(strategy, Backend.H2, dataSource, 50);
+
+			Set<Long> values = ConcurrentHashMap.newKeySet();
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			for (int thread = 0; thread < 4; thread++) {
+				executor.execute(() -> {
+					long[] chunk = new long[30];
+					for (int i = 0; i < 20; i++) {
+						incrementer.nextLongValues(chunk, 0, chunk.length);
+						for (long value : chunk) {
+							values.add(value);
+						}
+						// Larger than the cache, reserved with one round trip.
+						for (long value : incrementer.nextLongValues(120)) {
+							values.add(value);
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+			assertThat(values).as(strategy.name()).hasSize(4 * 20 * 150);
+		}
+	}
+
+	@Test
+	public void sequenceReservesTheWholeRequestInOneQuery() throws Exception {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:bulk" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		StandInIncrementers.createH2Schema(dataSource);
+		SqlServerSequenceMaxValueIncrementer incrementer = (SqlServerSequenceMaxValueIncrementer) StandInIncrementers.create(
+				IncrementStrategy.SEQUENCE, Backend.H2, dataSource, 1);
+
+		LongBuffer buffer = LongBuffer.allocate(1000);
+		incrementer.nextLongValues(buffer);
+		assertThat(buffer.hasRemaining()).isFalse();
+		assertThat(buffer.get(999) - buffer.get(0)).isEqualTo(999);
+		assertThat(incrementer.getQueryCount()).isEqualTo(1);
+		assertThat(incrementer.getServedCount()).isEqualTo(1000);
+	}
+}
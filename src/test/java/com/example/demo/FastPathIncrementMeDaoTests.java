@@ -0,0 +1,103 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class FastPathIncrementMeDaoTests {
+
+	private final AtomicInteger transactions = new AtomicInteger();
+
+	private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void cachedValuesAreServedWithoutATransaction() {
+		FastPathIncrementMeDao dao = new FastPathIncrementMeDao(transactionalDao(IncrementStrategy.HI_LO, 10));
+
+		Set<Long> values = new HashSet<>();
+		for (int i = 0; i < 25; i++) {
+			values.add(dao.getNextLongValue());
+		}
+
+		assertThat(values).hasSize(25);
+		// One transaction for each of the three blocks, none for the values taken from a block.
+		assertThat(transactions.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void sequenceValuesAreRequestedWithoutATransaction() {
+		FastPathIncrementMeDao dao = new FastPathIncrementMeDao(transactionalDao(IncrementStrategy.SEQUENCE, 1));
+
+		assertThat(dao.getNextLongValue()).isLessThan(dao.getNextLongValue());
+		assertThat(transactions.get()).isZero();
+	}
+
+	@Test
+	public void bulkRequestsStillRunInATransaction() {
+		FastPathIncrementMeDao dao = new FastPathIncrementMeDao(transactionalDao(IncrementStrategy.HI_LO, 10));
+
+		assertThat(dao.getNextValues(5)).hasSize(5);
+		assertThat(transactions.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void snowflakeRejectsIntValuesWithOrWithoutTheFastPath() {
+		IncrementMeDaoImpl transactionalDao = transactionalDao(IncrementStrategy.SNOWFLAKE, 1);
+		FastPathIncrementMeDao dao = new FastPathIncrementMeDao(transactionalDao);
+
+		assertThatThrownBy(transactionalDao::getNextValue).isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasMessageContaining("getNextLongValue()");
+		assertThatThrownBy(dao::getNextValue).isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasMessageContaining("getNextLongValue()");
+		assertThat(dao.getNextLongValue()).isLessThan(dao.getNextLongValue());
+		assertThat(dao.getNextValues(3)).hasSize(3);
+		transactionalDao.discardCachedValues();
+	}
+
+	// The DAO behind the same transaction interceptor the application context puts in front of it.
+	private IncrementMeDaoImpl transactionalDao(IncrementStrategy strategy, int cacheSize) {
+		DataSource dataSource = InMemoryJdbcStub.dataSource();
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource) {
+
+			@Override
+			protected void doBegin(Object transaction, TransactionDefinition definition) {
+				transactions.incrementAndGet();
+				super.doBegin(transaction, definition);
+			}
+		};
+		scheduler.initialize();
+		IncrementMeDaoImpl dao = new IncrementMeDaoImpl(dataSource, transactionManager, new SyncTaskExecutor(), scheduler,
+				new SimpleMeterRegistry(), new DataSourceProperties());
+		dao.setIncrementStrategy(strategy);
+		dao.setCacheSize(cacheSize);
+
+		ProxyFactory proxyFactory = new ProxyFactory(dao);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+		return (IncrementMeDaoImpl) proxyFactory.getProxy();
+	}
+}
@@ -0,0 +1,159 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.LongBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class IdBlockCacheTests {
+
+	@Test
+	public void servesEveryValueOnceAndRefillsOncePerBlock() throws Exception {
+		AtomicLong next = new AtomicLong(1);
+		AtomicInteger refills = new AtomicInteger();
+		IdBlockCache cache = new IdBlockCache(size -> {
+			refills.incrementAndGet();
+			return IdBlock.range(next.getAndAdd(size), 1, size);
+		}, () -> 100);
+
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		for (int thread = 0; thread < 16; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 10000; i++) {
+					values.add(cache.next());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(160000);
+		assertThat(refills.get()).isEqualTo(1600);
+		assertThat(cache.remaining()).isEqualTo(0);
+	}
+
+	@Test
+	public void prefetchedBlockIsReadyBeforeTheCurrentBlockRunsOut() {
+		AtomicLong next = new AtomicLong(1);
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(next.getAndAdd(size), 1, size), () -> 10);
+		cache.setPrefetchExecutor(Runnable::run);
+		cache.setLowWaterMark(0.2);
+
+		for (long expected = 1; expected <= 100; expected++) {
+			assertThat(cache.next()).isEqualTo(expected);
+		}
+		// Only the very first block is reserved on the caller's thread.
+		assertThat(cache.getRefillWaitCount()).isEqualTo(1);
+		assertThat(cache.getRefillCount()).isEqualTo(11);
+	}
+
+	@Test
+	public void warmUpReservesTheFirstBlockAheadOfTheFirstRequest() {
+		AtomicLong next = new AtomicLong(1);
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(next.getAndAdd(size), 1, size), () -> 10);
+
+		assertThat(cache.warmUp()).isTrue();
+		assertThat(cache.warmUp()).isFalse();
+		assertThat(cache.remaining()).isEqualTo(10);
+		assertThat(cache.next()).isEqualTo(1);
+		assertThat(cache.getRefillCount()).isEqualTo(1);
+		assertThat(cache.getRefillWaitCount()).isZero();
+	}
+
+	@Test
+	public void nextIfCachedNeverRefillsOnTheCallersThread() {
+		AtomicLong next = new AtomicLong(1);
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(next.getAndAdd(size), 1, size), () -> 2);
+
+		assertThat(cache.nextIfCached()).isEqualTo(IdBlockCache.NO_CACHED_VALUE);
+		assertThat(cache.next()).isEqualTo(1);
+		assertThat(cache.nextIfCached()).isEqualTo(2);
+		assertThat(cache.nextIfCached()).isEqualTo(IdBlockCache.NO_CACHED_VALUE);
+		assertThat(cache.getRefillCount()).isEqualTo(1);
+		assertThat(cache.getServedCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void bulkAndSingleValuesAreUniqueAcrossThreads() throws Exception {
+		AtomicLong next = new AtomicLong(1);
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(next.getAndAdd(size), 1, size), () -> 100);
+
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int thread = 0; thread < 8; thread++) {
+			int chunk = 1 + thread * 37;
+			executor.execute(() -> {
+				long[] buffer = new long[chunk];
+				for (int i = 0; i < 500; i++) {
+					cache.fill(buffer, 0, chunk);
+					for (long value : buffer) {
+						values.add(value);
+					}
+					values.add(cache.next());
+					count.addAndGet(chunk + 1);
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(count.get());
+	}
+
+	@Test
+	public void largeRequestReservesAnExactSizeBlock() {
+		AtomicLong next = new AtomicLong(1);
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(next.getAndAdd(size), 1, size), () -> 10);
+		assertThat(cache.next()).isEqualTo(1);
+
+		LongBuffer buffer = LongBuffer.allocate(25);
+		cache.fill(buffer);
+		assertThat(buffer.array()[0]).isEqualTo(11);
+		assertThat(buffer.array()[24]).isEqualTo(35);
+		assertThat(cache.getRefillCount()).isEqualTo(2);
+		// The current block is left alone.
+		assertThat(cache.remaining()).isEqualTo(9);
+		assertThat(cache.next()).isEqualTo(2);
+		assertThat(cache.getServedCount()).isEqualTo(27);
+	}
+
+	@Test
+	public void stripedCacheServesEveryValueOnce() throws Exception {
+		AtomicLong next = new AtomicLong(1);
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(next.getAndAdd(size), 1, size), () -> 1000);
+		cache.setStripeSize(64);
+
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		for (int thread = 0; thread < 16; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 10000; i++) {
+					values.add(cache.next());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(160000);
+		// Each thread may leave part of a stripe unused, but never more than one stripe.
+		assertThat(next.get() - 1 - cache.remaining()).isLessThanOrEqualTo(160000 + 16 * 64);
+	}
+
+	@Test
+	public void arrayBlockServesValuesInOrder() {
+		IdBlock block = IdBlock.of(new long[] { 3, 7, 11 });
+		assertThat(block.valueAt(block.claim())).isEqualTo(3);
+		assertThat(block.valueAt(block.claim())).isEqualTo(7);
+		assertThat(block.remaining()).isEqualTo(1);
+		assertThat(block.valueAt(block.claim())).isEqualTo(11);
+		assertThat(block.claim()).isEqualTo(-1);
+	}
+}
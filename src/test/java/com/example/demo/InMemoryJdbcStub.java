@@ -0,0 +1,185 @@
+package com.example.demo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * A {@link DataSource} that answers the statements issued by the incrementers from an in-memory counter, without
+ * any database behind it. It understands the production SQL Server statements, so the incrementers can be used
+ * unmodified, and it makes it possible to measure the Java-side cost of an incrementer separately from the cost of
+ * the database.
+ *
+ * <p>Every statement that creates values (identity inserts, {@code MERGE} blocks, {@code NEXT VALUE FOR},
+ * {@code sp_sequence_get_range} and the hi/lo counter update) draws from one shared counter. Worker leases are always
+ * granted, each one with the next worker id, and so are application locks. Every other statement is accepted and ignored.
+ */
+public final class InMemoryJdbcStub {
+
+	private static final Pattern TOP = Pattern.compile("top \\((\\d+)\\)");
+
+	private static final Pattern RANGE_SIZE = Pattern.compile("@range_size = (\\d+)");
+
+	private static final Pattern HI_LO_BLOCK = Pattern.compile("\\+ (\\d+) output");
+
+	private final AtomicLong counter = new AtomicLong();
+
+	private final AtomicLong workerIds = new AtomicLong();
+
+	private InMemoryJdbcStub() {
+	}
+
+	public static DataSource dataSource() {
+		InMemoryJdbcStub stub = new InMemoryJdbcStub();
+		return proxy(DataSource.class, (proxy, method, args) -> {
+			if (method.getName().equals("getConnection")) {
+				return stub.connection();
+			}
+			return defaultValue(proxy, method, args);
+		});
+	}
+
+	private Connection connection() {
+		// The last identity generated on this connection, like @@identity.
+		AtomicLong lastIdentity = new AtomicLong();
+		return proxy(Connection.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "createStatement":
+					return statement(lastIdentity);
+				case "prepareStatement":
+					return preparedStatement(((String) args[0]).toLowerCase());
+				case "getAutoCommit":
+					return true;
+				default:
+					return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private Statement statement(AtomicLong lastIdentity) {
+		return proxy(Statement.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "executeUpdate":
+					String update = ((String) args[0]).toLowerCase();
+					if (update.startsWith("insert")) {
+						lastIdentity.set(this.counter.incrementAndGet());
+						return 1;
+					}
+					return 0;
+				case "executeQuery":
+					return query(((String) args[0]).toLowerCase(), lastIdentity);
+				default:
+					return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private PreparedStatement preparedStatement(String sql) {
+		return proxy(PreparedStatement.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "executeUpdate":
+					return 1;
+				case "executeQuery":
+					if (sql.contains("worker_id")) {
+						return resultSet(new long[][] { { this.workerIds.getAndIncrement(), 0 } });
+					}
+					throw new SQLException("Statement not supported by the in-memory stub: " + sql);
+				default:
+					return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private ResultSet query(String sql, AtomicLong lastIdentity) throws SQLException {
+		if (sql.contains("sp_getapplock")) {
+			return resultSet(new long[][] { { 0 } });
+		}
+		if (sql.contains("@@identity") || sql.contains("scope_identity()")) {
+			return resultSet(new long[][] { { lastIdentity.get() } });
+		}
+		if (sql.contains("next value for")) {
+			return resultSet(new long[][] { { this.counter.incrementAndGet() } });
+		}
+		if (sql.startsWith("merge")) {
+			int count = group(TOP, sql);
+			long[][] rows = new long[count][];
+			long first = this.counter.getAndAdd(count) + 1;
+			for (int i = 0; i < count; i++) {
+				rows[i] = new long[] { first + i };
+			}
+			return resultSet(rows);
+		}
+		if (sql.contains("sp_sequence_get_range")) {
+			int count = group(RANGE_SIZE, sql);
+			return resultSet(new long[][] { { this.counter.getAndAdd(count) + 1, 1 } });
+		}
+		if (sql.startsWith("update")) {
+			int count = group(HI_LO_BLOCK, sql);
+			return resultSet(new long[][] { { this.counter.getAndAdd(count) + 1 } });
+		}
+		throw new SQLException("Statement not supported by the in-memory stub: " + sql);
+	}
+
+	private static int group(Pattern pattern, String sql) throws SQLException {
+		Matcher matcher = pattern.matcher(sql);
+		if (!matcher.find()) {
+			throw new SQLException("Statement not supported by the in-memory stub: " + sql);
+		}
+		return Integer.parseInt(matcher.group(1));
+	}
+
+	private static ResultSet resultSet(long[][] rows) {
+		int[] row = { -1 };
+		return proxy(ResultSet.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "next":
+					return ++row[0] < rows.length;
+				case "getLong":
+					return rows[row[0]][(Integer) args[0] - 1];
+				case "getInt":
+					return (int) rows[row[0]][(Integer) args[0] - 1];
+				default:
+					return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private static Object defaultValue(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "InMemoryJdbcStub " + method.getDeclaringClass().getSimpleName();
+			default:
+				break;
+		}
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(InMemoryJdbcStub.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+import com.example.demo.StandInIncrementers.Backend;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class IncrementerMetricsTests {
+
+	@Test
+	public void blockCachingIncrementerReportsServedRefillsAndDiscards() {
+		DataSource dataSource = InMemoryJdbcStub.dataSource();
+		DataFieldMaxValueIncrementer incrementer = StandInIncrementers.create(IncrementStrategy.HI_LO, Backend.IN_MEMORY_STUB, dataSource, 10);
+		MeterRegistry registry = new SimpleMeterRegistry();
+		new IncrementerMetrics(incrementer, "EXAMPLE_HILO_SEQ", IncrementStrategy.HI_LO).bindTo(registry);
+
+		for (int i = 0; i < 25; i++) {
+			incrementer.nextLongValue();
+		}
+		assertThat(counter(registry, "incrementer.values.served")).isEqualTo(25);
+		assertThat(registry.get("incrementer.refill").tag("strategy", "HI_LO").tag("name", "EXAMPLE_HILO_SEQ")
+				.functionTimer().count()).isEqualTo(3);
+		assertThat(registry.get("incrementer.block.remaining").gauge().value()).isEqualTo(5);
+
+		long discarded = ((BlockCachingIncrementer) incrementer).getValueCache().discard();
+		assertThat(discarded).isEqualTo(5);
+		assertThat(counter(registry, "incrementer.values.discarded")).isEqualTo(5);
+		assertThat(counter(registry, "incrementer.values.served")).isEqualTo(25);
+		assertThat(registry.get("incrementer.block.remaining").gauge().value()).isEqualTo(0);
+	}
+
+	@Test
+	public void sequenceIncrementerReportsEveryQueryAsARefill() {
+		DataSource dataSource = InMemoryJdbcStub.dataSource();
+		DataFieldMaxValueIncrementer incrementer = StandInIncrementers.create(IncrementStrategy.SEQUENCE, Backend.IN_MEMORY_STUB, dataSource, 1);
+		MeterRegistry registry = new SimpleMeterRegistry();
+		new IncrementerMetrics(incrementer, "EXAMPLE_REAL_SEQUENCE", IncrementStrategy.SEQUENCE).bindTo(registry);
+
+		for (int i = 0; i < 7; i++) {
+			incrementer.nextLongValue();
+		}
+		FunctionTimer refills = registry.get("incrementer.refill").functionTimer();
+		assertThat(refills.count()).isEqualTo(7);
+		assertThat(refills.totalTime(TimeUnit.NANOSECONDS)).isGreaterThan(0);
+		assertThat(counter(registry, "incrementer.values.served")).isEqualTo(7);
+		assertThat(registry.find("incrementer.block.remaining").gauge()).isNull();
+	}
+
+	@Test
+	public void nestedTransactionIncrementerReportsReaperDeletes() {
+		DataSource dataSource = InMemoryJdbcStub.dataSource();
+		DataFieldMaxValueIncrementer incrementer = StandInIncrementers.create(IncrementStrategy.NESTED_TRANSACTION_ON_DELETE,
+				Backend.IN_MEMORY_STUB, dataSource, 10);
+		MeterRegistry registry = new SimpleMeterRegistry();
+		new IncrementerMetrics(incrementer, "EXAMPLE_SEQ", IncrementStrategy.NESTED_TRANSACTION_ON_DELETE).bindTo(registry);
+
+		for (int i = 0; i < 20; i++) {
+			incrementer.nextLongValue();
+		}
+		assertThat(counter(registry, "incrementer.reaper.runs")).isEqualTo(2);
+	}
+
+	private static double counter(MeterRegistry registry, String name) {
+		FunctionCounter counter = registry.get(name).functionCounter();
+		return counter.count();
+	}
+}
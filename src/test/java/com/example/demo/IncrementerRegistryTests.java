@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+public class IncrementerRegistryTests {
+
+	private DriverManagerDataSource dataSource;
+
+	private SequenceRangeBatch batch;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:registry" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE SEQUENCE BATCH_JOB_SEQ START WITH 1");
+			stmt.execute("CREATE SEQUENCE BATCH_JOB_EXECUTION_SEQ START WITH 1");
+			stmt.execute("CREATE SEQUENCE BATCH_STEP_EXECUTION_SEQ START WITH 1");
+			SqlServerStubProcedures.register(con);
+		}
+		batch = new SequenceRangeBatch(dataSource) {
+
+			@Override
+			protected String getBatchRangeQuery(String[] sequenceNames, int[] rangeSizes) {
+				StringBuilder sql = new StringBuilder();
+				for (int i = 0; i < sequenceNames.length; i++) {
+					sql.append(i == 0 ? "select " : " union all select ").append(i).append(", * from sp_sequence_get_range('")
+							.append(sequenceNames[i]).append("', ").append(rangeSizes[i]).append(")");
+				}
+				return sql.toString();
+			}
+		};
+	}
+
+	@Test
+	public void createsOneIncrementerPerSequenceAcrossThreads() throws Exception {
+		AtomicInteger created = new AtomicInteger();
+		IncrementerRegistry registry = new IncrementerRegistry(name -> {
+			created.incrementAndGet();
+			return incrementer(name);
+		});
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int thread = 0; thread < 8; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 200; i++) {
+					values.add(registry.getIncrementer("batch_job_seq").nextLongValue());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(created.get()).isEqualTo(1);
+		assertThat(values).hasSize(1600);
+		assertThat(registry.getIncrementer("BATCH_JOB_SEQ")).isSameAs(registry.getIncrementer("batch_job_seq"));
+	}
+
+	@Test
+	public void factoryIsGivenTheNameAsFirstRequestedWhateverTheLocale() {
+		Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try {
+			List<String> names = new ArrayList<>();
+			IncrementerRegistry registry = new IncrementerRegistry(name -> {
+				names.add(name);
+				return incrementer(name);
+			});
+
+			assertThat(registry.getIncrementer("batch_job_seq")).isSameAs(registry.getIncrementer("BATCH_JOB_SEQ"));
+			assertThat(names).containsExactly("batch_job_seq");
+		}
+		finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	@Test
+	public void sequencesRunningLowAreRefilledInOneRoundTrip() {
+		IncrementerRegistry registry = new IncrementerRegistry(this::incrementer);
+		SqlServerIncrementerFactory factory = new SqlServerIncrementerFactory(registry);
+		DataFieldMaxValueIncrementer job = factory.getIncrementer("SQLSERVER", "BATCH_JOB_SEQ");
+		DataFieldMaxValueIncrementer execution = factory.getIncrementer("sqlserver", "BATCH_JOB_EXECUTION_SEQ");
+		DataFieldMaxValueIncrementer step = factory.getIncrementer("SQLSERVER", "BATCH_STEP_EXECUTION_SEQ");
+
+		for (int run = 1; run <= 25; run++) {
+			assertThat(job.nextLongValue()).isEqualTo(run);
+			assertThat(execution.nextLongValue()).isEqualTo(run);
+			assertThat(step.nextLongValue()).isEqualTo(run);
+		}
+		// Three blocks of 10 per sequence, reserved for all three sequences at once.
+		assertThat(batch.getRoundTripCount()).isEqualTo(3);
+		assertThat(batch.getPiggybackCount()).isEqualTo(6);
+		assertThat(factory.isSupportedIncrementerType("ORACLE")).isFalse();
+	}
+
+	private DataFieldMaxValueIncrementer incrementer(String name) {
+		SqlServerSequenceRangeMaxValueIncrementer incrementer = new SqlServerSequenceRangeMaxValueIncrementer(dataSource, name, 10);
+		batch.register(incrementer);
+		return incrementer;
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalRangeJournalTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void nextProcessServesTheParkedValuesBeforeReservingABlock() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("EXAMPLE_SEQ.journal");
+		AtomicLong database = new AtomicLong(1);
+
+		IdBlockCache first = cache(database, new LocalRangeJournal(path, "db"));
+		for (long expected = 1; expected <= 3; expected++) {
+			assertThat(first.next()).isEqualTo(expected);
+		}
+		assertThat(first.discard()).isZero();
+		assertThat(first.getParkedCount()).isEqualTo(7);
+
+		IdBlockCache second = cache(database, new LocalRangeJournal(path, "db"));
+		for (long expected = 4; expected <= 10; expected++) {
+			assertThat(second.next()).isEqualTo(expected);
+		}
+		assertThat(second.getRefillCount()).isZero();
+		assertThat(second.getReclaimedCount()).isEqualTo(7);
+		// The parked values are used up, the next block comes from the database.
+		assertThat(second.next()).isEqualTo(11);
+		assertThat(second.getRefillCount()).isEqualTo(1);
+		assertThat(second.getServedCount()).isEqualTo(8);
+	}
+
+	@Test
+	public void valuesOfAProcessThatDiesAreNeverServedAgain() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("EXAMPLE_SEQ.journal");
+		new LocalRangeJournal(path, "db").park(Collections.singletonList(new LocalRangeJournal.Range(1, 1, 10)));
+
+		// The process claims the values and dies without parking what is left of them.
+		assertThat(new LocalRangeJournal(path, "db").claim()).hasSize(1);
+
+		assertThat(new LocalRangeJournal(path, "db").claim()).isEmpty();
+	}
+
+	@Test
+	public void valuesParkedUnderAnotherKeyAreNotClaimed() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("EXAMPLE_SEQ.journal");
+		new LocalRangeJournal(path, "db").park(Collections.singletonList(new LocalRangeJournal.Range(1, 1, 10)));
+
+		assertThat(new LocalRangeJournal(path, "other db").claim()).isEmpty();
+		assertThat(new LocalRangeJournal(path, "db").claim()).hasSize(1);
+	}
+
+	@Test
+	public void parkedValuesAreClaimedOnlyOnce() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("EXAMPLE_SEQ.journal");
+		new LocalRangeJournal(path, "db").park(Collections.singletonList(new LocalRangeJournal.Range(1, 1, 10)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<List<LocalRangeJournal.Range>>> claims = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			LocalRangeJournal journal = new LocalRangeJournal(path, "db");
+			claims.add(executor.submit((Callable<List<LocalRangeJournal.Range>>) journal::claim));
+		}
+		int claimed = 0;
+		for (Future<List<LocalRangeJournal.Range>> claim : claims) {
+			claimed += claim.get().size();
+		}
+		executor.shutdown();
+		assertThat(claimed).isEqualTo(1);
+	}
+
+	@Test
+	public void arrayBlockIsParkedAsRanges() {
+		IdBlock block = IdBlock.of(new long[] { 1, 2, 3, 10, 12, 14, 20 });
+
+		List<LocalRangeJournal.Range> ranges = LocalRangeJournal.ranges(block, 1);
+
+		assertThat(ranges).extracting(LocalRangeJournal.Range::toString)
+				.containsExactly("2 values from 2 step 1", "3 values from 10 step 2", "1 values from 20 step 1");
+	}
+
+	private IdBlockCache cache(AtomicLong database, LocalRangeJournal journal) {
+		IdBlockCache cache = new IdBlockCache(size -> IdBlock.range(database.getAndAdd(size), 1, size), () -> 10);
+		cache.setJournal(journal);
+		return cache;
+	}
+}
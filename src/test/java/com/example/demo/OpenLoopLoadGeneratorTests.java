@@ -0,0 +1,33 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+public class OpenLoopLoadGeneratorTests {
+
+	@Test
+	public void issuesCallsAtTheTargetRate() throws Exception {
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(new ConcurrentTaskExecutor(executor), next::incrementAndGet);
+
+			StressReport report = generator.run("SEQUENCE", 2000, Duration.ofMillis(250));
+
+			assertThat(report.getSuccesses()).isEqualTo(500);
+			assertThat(report.getFailureCount()).isZero();
+			assertThat(report.getDuplicates()).isZero();
+			assertThat(report.getThroughputPerSecond()).isBetween(1000.0, 2500.0);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
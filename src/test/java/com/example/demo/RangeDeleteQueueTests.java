@@ -0,0 +1,154 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class RangeDeleteQueueTests {
+
+	private DriverManagerDataSource dataSource;
+
+	private ThreadPoolTaskScheduler scheduler;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:queue" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=200");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE TABLE EXAMPLE_SEQ (ID BIGINT IDENTITY)");
+			for (int i = 0; i < 100; i++) {
+				stmt.executeUpdate("INSERT INTO EXAMPLE_SEQ DEFAULT VALUES");
+			}
+		}
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void mergesBlocksIntoRangeDeletesAndKeepsTheNewestRow() throws Exception {
+		RangeDeleteQueue queue = queue();
+		queue.add(values(1, 10));
+		queue.add(values(11, 20));
+		// Another process took 21 to 24.
+		queue.add(values(25, 30));
+		queue.flush();
+
+		assertThat(queue.getRowCount()).isEqualTo(25);
+		assertThat(queue.getRunCount()).isEqualTo(1);
+		assertThat(queue.getPendingCount()).isEqualTo(0);
+		assertThat(rowCount(30)).isEqualTo(5);
+	}
+
+	@Test
+	public void rangesLockedByAnotherSessionAreRetried() throws Exception {
+		RangeDeleteQueue queue = queue();
+		queue.setQueryTimeoutSeconds(1);
+		try (Connection locker = dataSource.getConnection(); Statement stmt = locker.createStatement()) {
+			locker.setAutoCommit(false);
+			stmt.executeUpdate("DELETE FROM EXAMPLE_SEQ WHERE ID = 5");
+			queue.add(values(1, 10));
+			queue.add(values(11, 11));
+			queue.flush();
+
+			assertThat(queue.getPendingCount()).isEqualTo(1);
+			locker.commit();
+		}
+		queue.flush();
+
+		assertThat(rowCount(10)).isZero();
+	}
+
+	@Test
+	public void blocksAreQueuedOnceTheCallersTransactionCommits() {
+		RangeDeleteQueue queue = queue();
+		NestedTransactionOnDeleteValueIncrementer incrementer = (NestedTransactionOnDeleteValueIncrementer) StandInIncrementers.create(
+				IncrementStrategy.NESTED_TRANSACTION_ON_DELETE, StandInIncrementers.Backend.H2, dataSource, 10);
+		incrementer.setDeleteQueue(queue);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+		transactionTemplate.execute(status -> {
+			incrementer.nextLongValue();
+			status.setRollbackOnly();
+			return null;
+		});
+		assertThat(queue.getPendingCount()).isZero();
+
+		transactionTemplate.execute(status -> {
+			for (int i = 0; i < 11; i++) {
+				incrementer.nextLongValue();
+			}
+			assertThat(queue.getPendingCount()).isZero();
+			return null;
+		});
+		assertThat(queue.getPendingCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void splitsLongRanges() {
+		RangeDeleteQueue queue = queue();
+		queue.setMaxRowsPerDelete(10);
+		List<long[]> ranges = new ArrayList<>(Arrays.asList(new long[] { 21, 25 }, new long[] { 1, 20 }, new long[] { 40, 41 }));
+
+		assertThat(queue.merge(ranges)).containsExactly(new long[] { 1, 10 }, new long[] { 11, 20 }, new long[] { 21, 25 },
+				new long[] { 40, 41 });
+	}
+
+	@Test
+	public void incrementerHandsConsumedValuesToTheQueue() {
+		RangeDeleteQueue queue = queue();
+		NestedTransactionOnDeleteValueIncrementer incrementer = (NestedTransactionOnDeleteValueIncrementer) StandInIncrementers.create(
+				IncrementStrategy.NESTED_TRANSACTION_ON_DELETE, StandInIncrementers.Backend.H2, dataSource, 10);
+		incrementer.setDeleteQueue(queue);
+		for (int i = 0; i < 30; i++) {
+			incrementer.nextLongValue();
+		}
+		queue.stop();
+
+		assertThat(queue.getRowCount()).isEqualTo(29);
+		assertThat(incrementer.getReapedRowCount()).isEqualTo(29);
+	}
+
+	// H2 does not know the table hints of SQL Server.
+	private RangeDeleteQueue queue() {
+		return new RangeDeleteQueue(dataSource, "EXAMPLE_SEQ", "id", scheduler) {
+
+			@Override
+			protected String getDeleteStatement(long first, long last) {
+				return "delete from EXAMPLE_SEQ where id between " + first + " and " + last;
+			}
+		};
+	}
+
+	private long rowCount(long maxId) throws Exception {
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM EXAMPLE_SEQ WHERE ID <= " + maxId)) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	private static long[] values(long first, long last) {
+		long[] values = new long[(int) (last - first + 1)];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = first + i;
+		}
+		return values;
+	}
+}
@@ -0,0 +1,138 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class RefillRetryPolicyTests {
+
+	@Test
+	public void retriesLockTimeoutsUntilTheRefillSucceeds() {
+		RefillRetryPolicy retryPolicy = retryPolicy();
+		AtomicInteger attempts = new AtomicInteger();
+		IdBlockCache valueCache = new IdBlockCache(size -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw failure(1222);
+			}
+			return IdBlock.range(1, 1, size);
+		}, () -> 10);
+		valueCache.setRetryPolicy(retryPolicy);
+
+		assertThat(valueCache.next()).isEqualTo(1);
+		assertThat(retryPolicy.getRetryCount()).isEqualTo(2);
+		assertThat(retryPolicy.getLockTimeoutCount()).isEqualTo(2);
+		assertThat(retryPolicy.getRetryNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+		assertThat(valueCache.getRefillCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void givesUpAfterTheLastRetry() {
+		RefillRetryPolicy retryPolicy = retryPolicy();
+		AtomicInteger attempts = new AtomicInteger();
+
+		assertThatThrownBy(() -> retryPolicy.execute(() -> {
+			attempts.incrementAndGet();
+			throw failure(1205);
+		})).isInstanceOf(DataAccessResourceFailureException.class);
+		assertThat(attempts.get()).isEqualTo(4);
+		assertThat(retryPolicy.getExhaustedCount()).isEqualTo(1);
+		assertThat(retryPolicy.getDeadlockVictimCount()).isEqualTo(4);
+
+		// Anything but a deadlock or a lock timeout is passed on right away.
+		assertThatThrownBy(() -> retryPolicy.execute(() -> {
+			throw new IllegalStateException();
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(retryPolicy.getRetryCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void deadlockVictimIsNotRetriedWithinTheCallersTransaction() {
+		RefillRetryPolicy retryPolicy = retryPolicy();
+		AtomicInteger attempts = new AtomicInteger();
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:retry" + System.nanoTime());
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+		assertThatThrownBy(() -> transactionTemplate.execute(status -> retryPolicy.execute(() -> {
+			attempts.incrementAndGet();
+			throw failure(1205);
+		}))).isInstanceOf(DataAccessResourceFailureException.class);
+		assertThat(attempts.get()).isEqualTo(1);
+		assertThat(retryPolicy.getRetryCount()).isZero();
+		assertThat(retryPolicy.getDeadlockVictimCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void deadlockVictimOnTheRefillPoolIsRetriedWithinTheCallersTransaction() throws Exception {
+		RefillRetryPolicy retryPolicy = retryPolicy();
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:retry" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE TABLE EXAMPLE_SEQ (ID BIGINT IDENTITY)");
+		}
+		AtomicInteger attempts = new AtomicInteger();
+		SqlServerMaxValueIncrementer incrementer = new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+			@Override
+			protected String getIdentityStatement() {
+				return "select scope_identity()";
+			}
+		};
+		incrementer.setCacheSize(10);
+		incrementer.setRefillMode(IdentityRefillMode.ROW_BY_ROW);
+		incrementer.setRefillDataSource(new DelegatingDataSource(dataSource) {
+
+			@Override
+			public Connection getConnection() throws SQLException {
+				if (attempts.incrementAndGet() == 1) {
+					throw new SQLException("Transaction was deadlocked", "40001", 1205);
+				}
+				return super.getConnection();
+			}
+		});
+		incrementer.getValueCache().setRetryPolicy(retryPolicy);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+		// The deadlock only rolled back the refill on its own connection, the caller's transaction goes on.
+		Long value = transactionTemplate.execute(status -> incrementer.nextLongValue());
+		assertThat(value).isEqualTo(1);
+		assertThat(attempts.get()).isEqualTo(2);
+		assertThat(retryPolicy.getRetryCount()).isEqualTo(1);
+		assertThat(retryPolicy.getDeadlockVictimCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void backoffIsJitteredAndBounded() {
+		RefillRetryPolicy retryPolicy = new RefillRetryPolicy();
+		retryPolicy.setInitialBackoff(Duration.ofMillis(10));
+		retryPolicy.setMaxBackoff(Duration.ofMillis(50));
+		for (int i = 0; i < 100; i++) {
+			assertThat(retryPolicy.backoffNanos(1)).isBetween(TimeUnit.MILLISECONDS.toNanos(5), TimeUnit.MILLISECONDS.toNanos(10));
+			assertThat(retryPolicy.backoffNanos(3)).isBetween(TimeUnit.MILLISECONDS.toNanos(20), TimeUnit.MILLISECONDS.toNanos(40));
+			assertThat(retryPolicy.backoffNanos(40)).isBetween(TimeUnit.MILLISECONDS.toNanos(25), TimeUnit.MILLISECONDS.toNanos(50));
+		}
+	}
+
+	private static RefillRetryPolicy retryPolicy() {
+		RefillRetryPolicy retryPolicy = new RefillRetryPolicy();
+		retryPolicy.setInitialBackoff(Duration.ofMillis(1));
+		retryPolicy.setMaxBackoff(Duration.ofMillis(5));
+		return retryPolicy;
+	}
+
+	private static DataAccessResourceFailureException failure(int errorCode) {
+		return new DataAccessResourceFailureException("Could not increment identity", new SQLException("Refill failed",
+				errorCode == 1205 ? "40001" : "S0001", errorCode));
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+public class ScheduledIdentityReaperTests {
+
+	private DriverManagerDataSource dataSource;
+
+	private ThreadPoolTaskScheduler scheduler;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:reaper" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE TABLE EXAMPLE_SEQ (ID BIGINT IDENTITY)");
+			for (int i = 0; i < 2500; i++) {
+				stmt.executeUpdate("INSERT INTO EXAMPLE_SEQ DEFAULT VALUES");
+			}
+		}
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void deletesInChunksBelowTheWatermark() throws Exception {
+		ScheduledIdentityReaper reaper = reaper("EXAMPLE_SEQ");
+		reaper.advanceWatermark(2001);
+		reaper.reap();
+
+		assertThat(reaper.getRowCount()).isEqualTo(2000);
+		assertThat(reaper.getRunCount()).isEqualTo(1);
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT MIN(ID), COUNT(*) FROM EXAMPLE_SEQ")) {
+			rs.next();
+			assertThat(rs.getLong(1)).isEqualTo(2001);
+			assertThat(rs.getLong(2)).isEqualTo(500);
+		}
+
+		// Nothing to do until the watermark moves again.
+		reaper.reap();
+		assertThat(reaper.getRunCount()).isEqualTo(1);
+		reaper.stop();
+	}
+
+	@Test
+	public void backsOffWhenTheDeleteFails() {
+		ScheduledIdentityReaper reaper = reaper("MISSING_SEQ");
+		reaper.advanceWatermark(100);
+		reaper.reap();
+		reaper.reap();
+
+		assertThat(reaper.getBackoffCount()).isEqualTo(2);
+		assertThat(reaper.getRowCount()).isEqualTo(0);
+		reaper.stop();
+	}
+
+	private ScheduledIdentityReaper reaper(String tableName) {
+		ScheduledIdentityReaper reaper = new ScheduledIdentityReaper(dataSource, tableName, "id", scheduler) {
+
+			@Override
+			protected String getDeleteStatement(int batchSize, long watermark) {
+				// H2 does not know the SQL Server table hints.
+				return "delete top (" + batchSize + ") from " + tableName + " where id < " + watermark;
+			}
+		};
+		reaper.setBatchSize(500);
+		reaper.setInterval(Duration.ofMinutes(1));
+		return reaper;
+	}
+}
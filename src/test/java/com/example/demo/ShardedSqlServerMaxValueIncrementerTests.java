@@ -0,0 +1,119 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+public class ShardedSqlServerMaxValueIncrementerTests {
+
+	private DriverManagerDataSource dataSource;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:sharded" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		StandInIncrementers.createH2Schema(dataSource);
+	}
+
+	@Test
+	public void shardsServeDisjointValues() throws Exception {
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(StandInIncrementers.SHARD_COUNT);
+		for (int shard = 0; shard < StandInIncrementers.SHARD_COUNT; shard++) {
+			ShardedSqlServerMaxValueIncrementer incrementer = incrementer(shard);
+			executor.execute(() -> {
+				for (int i = 0; i < 250; i++) {
+					long value = incrementer.nextLongValue();
+					assertThat(value % StandInIncrementers.SHARD_COUNT).isEqualTo(incrementer.getShard());
+					values.add(value);
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(values).hasSize(1000);
+		for (int shard = 0; shard < StandInIncrementers.SHARD_COUNT; shard++) {
+			assertThat(rowCount(shard)).isEqualTo(250);
+		}
+	}
+
+	@Test
+	public void reaperOnlyDeletesFromItsOwnShard() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		ScheduledIdentityReaper[] reaper = new ScheduledIdentityReaper[1];
+		ShardedSqlServerMaxValueIncrementer incrementer = new ShardedSqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", StandInIncrementers.SHARD_COUNT, 2) {
+
+			@Override
+			protected String getIdentityStatement() {
+				return "select scope_identity()";
+			}
+
+			@Override
+			protected ScheduledIdentityReaper createReaper(TaskScheduler reaperScheduler) {
+				reaper[0] = new ScheduledIdentityReaper(getDataSource(), getIncrementerName(), getColumnName(), reaperScheduler) {
+
+					@Override
+					protected String getDeleteStatement(int batchSize, long watermark) {
+						return "delete top (" + batchSize + ") from " + getIncrementerName() + " where id < " + watermark;
+					}
+				};
+				reaper[0].setInterval(Duration.ofMinutes(1));
+				return reaper[0];
+			}
+		};
+		incrementer.setCacheSize(10);
+		incrementer.setRefillMode(IdentityRefillMode.ROW_BY_ROW);
+		incrementer.setReaperScheduler(scheduler);
+		ShardedSqlServerMaxValueIncrementer other = incrementer(3);
+		for (int i = 0; i < 25; i++) {
+			incrementer.nextLongValue();
+			other.nextLongValue();
+		}
+		// Identity 26 of shard 2, from its third block, which starts at identity 21.
+		assertThat(incrementer.nextLongValue()).isEqualTo(26 * StandInIncrementers.SHARD_COUNT + 2);
+
+		reaper[0].reap();
+
+		assertThat(reaper[0].getRowCount()).isEqualTo(20);
+		assertThat(rowCount(2)).isEqualTo(10);
+		assertThat(rowCount(3)).isEqualTo(30);
+		reaper[0].stop();
+		scheduler.shutdown();
+	}
+
+	private ShardedSqlServerMaxValueIncrementer incrementer(int shard) {
+		ShardedSqlServerMaxValueIncrementer incrementer = new ShardedSqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", StandInIncrementers.SHARD_COUNT, shard) {
+
+			@Override
+			protected String getIdentityStatement() {
+				return "select scope_identity()";
+			}
+		};
+		incrementer.setCacheSize(10);
+		incrementer.setRefillMode(IdentityRefillMode.ROW_BY_ROW);
+		return incrementer;
+	}
+
+	private int rowCount(int shard) throws Exception {
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + ShardedSqlServerMaxValueIncrementer.tableName("EXAMPLE_SEQ", shard))) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class SnowflakeMaxValueIncrementerTests {
+
+	private static final long NOW = SnowflakeMaxValueIncrementer.EPOCH_MILLIS + 1_000_000;
+
+	private DriverManagerDataSource dataSource;
+
+	private ThreadPoolTaskScheduler scheduler;
+
+	private final AtomicLong clock = new AtomicLong(NOW);
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:snowflake" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		StandInIncrementers.createH2Schema(dataSource);
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void processesLeaseDifferentWorkerIdsAndServeUniqueValues() throws Exception {
+		SnowflakeMaxValueIncrementer first = incrementer();
+		SnowflakeMaxValueIncrementer second = incrementer();
+		first.start();
+		second.start();
+		assertThat(first.getWorkerId()).isNotEqualTo(second.getWorkerId());
+
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int thread = 0; thread < 4; thread++) {
+			SnowflakeMaxValueIncrementer incrementer = (thread % 2 == 0 ? first : second);
+			executor.execute(() -> {
+				for (int i = 0; i < 2000; i++) {
+					values.add(incrementer.nextLongValue());
+				}
+				for (long value : incrementer.nextLongValues(3000)) {
+					values.add(value);
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(4 * 5000);
+		assertThatThrownBy(first::nextIntValue).isInstanceOf(InvalidDataAccessApiUsageException.class);
+	}
+
+	@Test
+	public void counterOverflowMovesToTheNextMillisecond() {
+		SnowflakeMaxValueIncrementer incrementer = incrementer();
+		long[] values = incrementer.nextLongValues(5000);
+
+		assertThat(values).isSorted().doesNotHaveDuplicates();
+		assertThat(incrementer.getOverflowCount()).isEqualTo(1);
+		assertThat(SnowflakeMaxValueIncrementer.timestamp(values[4999])).isEqualTo(NOW - SnowflakeMaxValueIncrementer.EPOCH_MILLIS + 1);
+		assertThat(SnowflakeMaxValueIncrementer.workerId(values[0])).isEqualTo(incrementer.getWorkerId());
+	}
+
+	@Test
+	public void clockRegressionKeepsTheLastTimestampUntilTheDriftIsExceeded() {
+		SnowflakeMaxValueIncrementer incrementer = incrementer();
+		long before = incrementer.nextLongValue();
+		clock.addAndGet(-500);
+		long after = incrementer.nextLongValue();
+
+		assertThat(after).isGreaterThan(before);
+		assertThat(SnowflakeMaxValueIncrementer.timestamp(after)).isEqualTo(SnowflakeMaxValueIncrementer.timestamp(before));
+
+		clock.addAndGet(-1000);
+		assertThatThrownBy(incrementer::nextLongValue).isInstanceOf(DataAccessResourceFailureException.class);
+		assertThat(incrementer.getClockRegressionCount()).isEqualTo(1);
+
+		clock.addAndGet(1501);
+		assertThat(incrementer.nextLongValue()).isGreaterThan(after);
+	}
+
+	@Test
+	public void releasedWorkerIdIsReusedAfterTheLastTimestamp() throws Exception {
+		SnowflakeMaxValueIncrementer first = incrementer();
+		long last = first.nextLongValue();
+		first.stop();
+		assertThatThrownBy(first::nextLongValue).isInstanceOf(DataAccessResourceFailureException.class);
+
+		// The clock of the next process is behind, but within the drift.
+		clock.addAndGet(-200);
+		SnowflakeMaxValueIncrementer second = incrementer();
+		long next = second.nextLongValue();
+		assertThat(SnowflakeMaxValueIncrementer.workerId(next)).isEqualTo(SnowflakeMaxValueIncrementer.workerId(last));
+		assertThat(next).isGreaterThan(last);
+	}
+
+	@Test
+	public void processWithAClockBehindNeverRepeatsTheValuesOfACrashedProcess() throws Exception {
+		ThreadPoolTaskScheduler crashingScheduler = new ThreadPoolTaskScheduler();
+		crashingScheduler.initialize();
+		SnowflakeMaxValueIncrementer crashed = incrementer(clock, crashingScheduler);
+		crashed.getLease().setDuration(Duration.ofMillis(300));
+		crashed.setMaxClockDrift(Duration.ofMillis(100));
+		crashed.nextLongValue();
+		// The lease is not renewed anymore, but the process keeps serving values until it expires, then it dies.
+		crashingScheduler.shutdown();
+		clock.addAndGet(250);
+		long last = crashed.nextLongValue();
+		Thread.sleep(1000);
+
+		// The clock of the next holder of the worker id is behind the clock of the crashed process.
+		AtomicLong skewedClock = new AtomicLong(NOW + 50);
+		SnowflakeMaxValueIncrementer next = incrementer(skewedClock, scheduler);
+		next.setMaxClockDrift(Duration.ofMillis(100));
+		next.start();
+		assertThat(next.getWorkerId()).isEqualTo(crashed.getWorkerId());
+		assertThatThrownBy(next::nextLongValue).isInstanceOf(DataAccessResourceFailureException.class);
+
+		skewedClock.set(NOW + 1000);
+		assertThat(next.nextLongValue()).isGreaterThan(last);
+		next.stop();
+	}
+
+	@Test
+	public void leasesANewWorkerIdWhenTheLeaseIsTaken() throws Exception {
+		SnowflakeMaxValueIncrementer incrementer = incrementer();
+		incrementer.getLease().setDuration(Duration.ofMillis(300));
+		incrementer.start();
+		int workerId = incrementer.getWorkerId();
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.executeUpdate("UPDATE EXAMPLE_WORKER_LEASE SET OWNER = 'another process' WHERE WORKER_ID = " + workerId);
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (incrementer.getWorkerId() == workerId && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(incrementer.getWorkerId()).isNotEqualTo(workerId);
+		assertThat(SnowflakeMaxValueIncrementer.workerId(incrementer.nextLongValue())).isEqualTo(incrementer.getWorkerId());
+		incrementer.stop();
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM EXAMPLE_WORKER_LEASE WHERE OWNER IS NOT NULL")) {
+			rs.next();
+			assertThat(rs.getInt(1)).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void leaseTakenInATransactionThatRollsBackIsStillHeld() throws Exception {
+		SnowflakeMaxValueIncrementer incrementer = incrementer();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.execute(status -> {
+			incrementer.start();
+			incrementer.nextLongValue();
+			status.setRollbackOnly();
+			return null;
+		});
+
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT OWNER, LAST_TIMESTAMP FROM EXAMPLE_WORKER_LEASE WHERE WORKER_ID = " + incrementer.getWorkerId())) {
+			rs.next();
+			assertThat(rs.getString(1)).isNotNull();
+			assertThat(rs.getLong(2)).isEqualTo(incrementer.getLease().getTimestampBound());
+		}
+		// Another process leases a different worker id.
+		SnowflakeMaxValueIncrementer other = incrementer();
+		other.start();
+		assertThat(other.getWorkerId()).isNotEqualTo(incrementer.getWorkerId());
+	}
+
+	private SnowflakeMaxValueIncrementer incrementer() {
+		return incrementer(clock, scheduler);
+	}
+
+	private SnowflakeMaxValueIncrementer incrementer(AtomicLong clock, ThreadPoolTaskScheduler scheduler) {
+		SnowflakeMaxValueIncrementer incrementer = new SnowflakeMaxValueIncrementer(dataSource, "EXAMPLE_WORKER_LEASE", scheduler) {
+
+			@Override
+			protected long currentTimeMillis() {
+				return clock.get();
+			}
+		};
+		incrementer.setLease(StandInIncrementers.h2Lease(dataSource));
+		return incrementer;
+	}
+}
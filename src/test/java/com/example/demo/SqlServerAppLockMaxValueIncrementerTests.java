@@ -0,0 +1,103 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.demo.StandInIncrementers.Backend;
+
+public class SqlServerAppLockMaxValueIncrementerTests {
+
+	private DriverManagerDataSource dataSource;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:applock" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		StandInIncrementers.createH2Schema(dataSource);
+	}
+
+	@Test
+	public void everyRefillTakesTheAppLock() throws Exception {
+		SqlServerAppLockMaxValueIncrementer incrementer = incrementer();
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int thread = 0; thread < 4; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 250; i++) {
+					values.add(incrementer.nextLongValue());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(values).hasSize(1000);
+		assertThat(incrementer.getAppLockWaitCount()).isEqualTo(incrementer.getValueCache().getRefillCount());
+		assertThat(incrementer.getAppLockTimeoutCount()).isZero();
+		// Released after every refill, so it can be taken again right away.
+		assertThat(SqlServerStubProcedures.spGetAppLock("EXAMPLE_SEQ", 0)).isEqualTo(0);
+		SqlServerStubProcedures.spReleaseAppLock("EXAMPLE_SEQ");
+	}
+
+	@Test
+	public void refillsWithoutTheLockWhenItTimesOut() throws Exception {
+		SqlServerAppLockMaxValueIncrementer incrementer = incrementer();
+		incrementer.setAppLockTimeout(Duration.ofMillis(50));
+		// Another process holds the lock.
+		assertThat(SqlServerStubProcedures.spGetAppLock("EXAMPLE_SEQ", 0)).isEqualTo(0);
+		try {
+			assertThat(incrementer.nextLongValue()).isEqualTo(1);
+			assertThat(incrementer.getAppLockTimeoutCount()).isEqualTo(1);
+			assertThat(incrementer.getAppLockWaitNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+		}
+		finally {
+			SqlServerStubProcedures.spReleaseAppLock("EXAMPLE_SEQ");
+		}
+	}
+
+	@Test
+	public void failedReleaseDoesNotHideTheFailedRefill() throws Exception {
+		SqlServerAppLockMaxValueIncrementer incrementer = new SqlServerAppLockMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+			@Override
+			protected String getIdentityStatement() {
+				return "select missing_identity()";
+			}
+
+			@Override
+			protected String getAppLockStatement(long timeoutMillis) {
+				return "call sp_getapplock('" + getIncrementerName() + "', " + timeoutMillis + ")";
+			}
+
+			@Override
+			protected String getReleaseAppLockStatement() {
+				return "call missing_releaseapplock('" + getIncrementerName() + "')";
+			}
+		};
+		incrementer.setRefillMode(IdentityRefillMode.ROW_BY_ROW);
+		try {
+			assertThatThrownBy(incrementer::nextLongValue).isInstanceOf(DataAccessResourceFailureException.class)
+					.hasCauseInstanceOf(SQLException.class)
+					.satisfies(ex -> assertThat(ex.getCause().getMessage()).contains("MISSING_IDENTITY"));
+		}
+		finally {
+			SqlServerStubProcedures.spReleaseAppLock("EXAMPLE_SEQ");
+		}
+	}
+
+	private SqlServerAppLockMaxValueIncrementer incrementer() {
+		return (SqlServerAppLockMaxValueIncrementer) StandInIncrementers.create(IncrementStrategy.APP_LOCK, Backend.H2, dataSource, 10);
+	}
+}
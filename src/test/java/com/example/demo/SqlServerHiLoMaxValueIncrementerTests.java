@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class SqlServerHiLoMaxValueIncrementerTests {
+
+	private DriverManagerDataSource dataSource;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:hilo" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE TABLE EXAMPLE_HILO_SEQ (NEXT_VAL BIGINT NOT NULL)");
+			stmt.execute("INSERT INTO EXAMPLE_HILO_SEQ VALUES (1)");
+			SqlServerStubProcedures.register(con);
+		}
+	}
+
+	@Test
+	public void servesBlocksWithoutInsertingRows() {
+		SqlServerHiLoMaxValueIncrementer incrementer = incrementer(100);
+		for (long expected = 1; expected <= 250; expected++) {
+			assertThat(incrementer.nextLongValue()).isEqualTo(expected);
+		}
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		assertThat(jdbcTemplate.queryForObject("select count(*) from EXAMPLE_HILO_SEQ", Integer.class)).isEqualTo(1);
+		assertThat(jdbcTemplate.queryForObject("select NEXT_VAL from EXAMPLE_HILO_SEQ", Long.class)).isEqualTo(301L);
+	}
+
+	@Test
+	public void blockOfARolledBackTransactionIsNotReservedAgain() {
+		SqlServerHiLoMaxValueIncrementer incrementer = incrementer(10);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.execute(status -> {
+			assertThat(incrementer.nextLongValue()).isEqualTo(1);
+			status.setRollbackOnly();
+			return null;
+		});
+
+		// The block stays cached, so the counter must not have gone back with the caller's transaction.
+		assertThat(incrementer(10).nextLongValue()).isEqualTo(11);
+		assertThat(incrementer.nextLongValue()).isEqualTo(2);
+	}
+
+	@Test
+	public void incrementersSharingTheCounterNeverOverlap() throws Exception {
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int process = 0; process < 4; process++) {
+			SqlServerHiLoMaxValueIncrementer incrementer = incrementer(25);
+			executor.execute(() -> {
+				for (int i = 0; i < 1000; i++) {
+					values.add(incrementer.nextLongValue());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(4000);
+	}
+
+	private SqlServerHiLoMaxValueIncrementer incrementer(int cacheSize) {
+		SqlServerHiLoMaxValueIncrementer incrementer = new SqlServerHiLoMaxValueIncrementer(dataSource, "EXAMPLE_HILO_SEQ", "NEXT_VAL") {
+
+			@Override
+			protected String getBlockIncrementStatement(int blockSize) {
+				return "call hilo_next_block('" + getIncrementerName() + "', '" + getColumnName() + "', " + blockSize + ")";
+			}
+		};
+		incrementer.setCacheSize(cacheSize);
+		return incrementer;
+	}
+}
@@ -0,0 +1,144 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class SqlServerMaxValueIncrementerTests {
+
+	private DriverManagerDataSource dataSource;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:table" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE TABLE EXAMPLE_SEQ (ID BIGINT IDENTITY)");
+		}
+	}
+
+	@Test
+	public void rowByRowRefillServesCacheInOrder() {
+		SqlServerMaxValueIncrementer incrementer = incrementer(10);
+		for (long expected = 1; expected <= 25; expected++) {
+			assertThat(incrementer.nextLongValue()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void setBasedRefillSortsTheValuesReturnedByOutput() {
+		// The rows of an OUTPUT clause come back in no particular order.
+		SqlServerMaxValueIncrementer incrementer = setBasedIncrementer(count -> "select x from system_range(1, " + count + ") order by x desc");
+		for (long expected = 1; expected <= 10; expected++) {
+			assertThat(incrementer.nextLongValue()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void setBasedRefillFailsWhenOutputReturnsFewerValues() {
+		SqlServerMaxValueIncrementer incrementer = setBasedIncrementer(count -> "select x from system_range(1, " + (count - 1) + ")");
+
+		assertThatThrownBy(incrementer::nextLongValue).isInstanceOf(DataAccessResourceFailureException.class)
+				.hasMessage("Block increment statement returned 9 of 10 values");
+	}
+
+	@Test
+	public void setBasedRefillFailsWhenOutputReturnsMoreValues() {
+		SqlServerMaxValueIncrementer incrementer = setBasedIncrementer(count -> "select x from system_range(1, " + (count + 1) + ")");
+
+		assertThatThrownBy(incrementer::nextLongValue).isInstanceOf(DataAccessResourceFailureException.class)
+				.hasMessage("Block increment statement returned more than 10 values");
+	}
+
+	@Test
+	public void valuesAreUniqueAcrossThreads() throws Exception {
+		SqlServerMaxValueIncrementer incrementer = incrementer(20);
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int thread = 0; thread < 8; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 500; i++) {
+					values.add(incrementer.nextLongValue());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(4000);
+	}
+
+	@Test
+	public void refillDataSourceCommitsBlocksOutsideTheCallersTransaction() throws Exception {
+		SqlServerMaxValueIncrementer incrementer = incrementer(10);
+		incrementer.setRefillDataSource(dataSource);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.execute(status -> {
+			assertThat(incrementer.nextLongValue()).isEqualTo(1);
+			status.setRollbackOnly();
+			return null;
+		});
+		assertThat(rowCount()).isEqualTo(10);
+	}
+
+	@Test
+	public void blocksAreReservedInTheCallersTransactionByDefault() throws Exception {
+		SqlServerMaxValueIncrementer incrementer = incrementer(10);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.execute(status -> {
+			assertThat(incrementer.nextLongValue()).isEqualTo(1);
+			status.setRollbackOnly();
+			return null;
+		});
+		assertThat(rowCount()).isEqualTo(0);
+	}
+
+	private long rowCount() throws Exception {
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM EXAMPLE_SEQ")) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	private SqlServerMaxValueIncrementer incrementer(int cacheSize) {
+		SqlServerMaxValueIncrementer incrementer = new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+			@Override
+			protected String getIdentityStatement() {
+				return "select scope_identity()";
+			}
+		};
+		incrementer.setCacheSize(cacheSize);
+		incrementer.setRefillMode(IdentityRefillMode.ROW_BY_ROW);
+		return incrementer;
+	}
+
+	// H2 has no OUTPUT clause, so the block increment statement is replaced by a query returning the given rows.
+	private SqlServerMaxValueIncrementer setBasedIncrementer(IntFunction<String> blockIncrementStatement) {
+		SqlServerMaxValueIncrementer incrementer = new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+			@Override
+			protected String getBlockIncrementStatement(int count) {
+				return blockIncrementStatement.apply(count);
+			}
+		};
+		incrementer.setCacheSize(10);
+		incrementer.setRefillMode(IdentityRefillMode.SET_BASED);
+		return incrementer;
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class SqlServerSequenceRangeMaxValueIncrementerTests {
+
+	private DriverManagerDataSource dataSource;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:range" + System.nanoTime() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE SEQUENCE EXAMPLE_REAL_SEQUENCE START WITH 1");
+			SqlServerStubProcedures.register(con);
+		}
+		SqlServerStubProcedures.rangeCalls.set(0);
+	}
+
+	@Test
+	public void servesRangeFromMemory() {
+		SqlServerSequenceRangeMaxValueIncrementer incrementer = incrementer(100);
+		for (long expected = 1; expected <= 250; expected++) {
+			assertThat(incrementer.nextLongValue()).isEqualTo(expected);
+		}
+		assertThat(SqlServerStubProcedures.rangeCalls.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void valuesAreUniqueAcrossThreads() throws Exception {
+		SqlServerSequenceRangeMaxValueIncrementer incrementer = incrementer(50);
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int thread = 0; thread < 8; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 1000; i++) {
+					values.add(incrementer.nextLongValue());
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(values).hasSize(8000);
+		assertThat(SqlServerStubProcedures.rangeCalls.get()).isEqualTo(160);
+	}
+
+	private SqlServerSequenceRangeMaxValueIncrementer incrementer(int cacheSize) {
+		return new SqlServerSequenceRangeMaxValueIncrementer(dataSource, "EXAMPLE_REAL_SEQUENCE", cacheSize) {
+
+			@Override
+			protected String getSequenceRangeQuery(int rangeSize) {
+				return "call sp_sequence_get_range('" + getIncrementerName() + "', " + rangeSize + ")";
+			}
+		};
+	}
+}
@@ -0,0 +1,104 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Java stand-ins for the SQL Server system procedures used by the incrementers, registered as H2 aliases
+ * so the incrementers can be exercised against an embedded database running in {@code MODE=MSSQLServer}.
+ */
+public final class SqlServerStubProcedures {
+
+	/** The number of times a range has been reserved, used to count round trips. */
+	static final AtomicInteger rangeCalls = new AtomicInteger();
+
+	/** The application locks, shared by every connection of the JVM like the locks of a server. */
+	private static final Map<String, Semaphore> appLocks = new ConcurrentHashMap<>();
+
+	private SqlServerStubProcedures() {
+	}
+
+	static void register(Connection con) throws SQLException {
+		try (Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE ALIAS IF NOT EXISTS sp_sequence_get_range FOR \""
+					+ SqlServerStubProcedures.class.getName() + ".spSequenceGetRange\"");
+			stmt.execute("CREATE ALIAS IF NOT EXISTS hilo_next_block FOR \""
+					+ SqlServerStubProcedures.class.getName() + ".hiLoNextBlock\"");
+			stmt.execute("CREATE ALIAS IF NOT EXISTS sp_getapplock FOR \""
+					+ SqlServerStubProcedures.class.getName() + ".spGetAppLock\"");
+			stmt.execute("CREATE ALIAS IF NOT EXISTS sp_releaseapplock FOR \""
+					+ SqlServerStubProcedures.class.getName() + ".spReleaseAppLock\"");
+		}
+	}
+
+	/**
+	 * Reserves {@code rangeSize} values from an H2 sequence and returns the first value and the increment, the
+	 * same two values {@link SqlServerSequenceRangeMaxValueIncrementer} reads from the real procedure.
+	 */
+	public static synchronized ResultSet spSequenceGetRange(Connection con, String sequenceName, int rangeSize) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		result.addColumn("RANGE_FIRST_VALUE", Types.BIGINT, 19, 0);
+		result.addColumn("SEQUENCE_INCREMENT", Types.BIGINT, 19, 0);
+		if ("jdbc:columnlist:connection".equals(con.getMetaData().getURL())) {
+			return result;
+		}
+		rangeCalls.incrementAndGet();
+		long first = 0;
+		try (Statement stmt = con.createStatement()) {
+			for (int i = 0; i < rangeSize; i++) {
+				try (ResultSet rs = stmt.executeQuery("select next value for " + sequenceName)) {
+					rs.next();
+					if (i == 0) {
+						first = rs.getLong(1);
+					}
+				}
+			}
+		}
+		result.addRow(first, 1L);
+		return result;
+	}
+
+	/**
+	 * Emulates {@code update ... set next_val = next_val + blockSize output deleted.next_val}, which H2 cannot parse.
+	 */
+	public static synchronized long hiLoNextBlock(Connection con, String tableName, String columnName, int blockSize) throws SQLException {
+		if ("jdbc:columnlist:connection".equals(con.getMetaData().getURL())) {
+			return 0;
+		}
+		try (Statement stmt = con.createStatement()) {
+			// Update first, so that the row stays locked until the caller commits, the way "output deleted" reads it.
+			stmt.executeUpdate("update " + tableName + " set " + columnName + " = " + columnName + " + " + blockSize);
+			try (ResultSet rs = stmt.executeQuery("select " + columnName + " from " + tableName)) {
+				rs.next();
+				return rs.getLong(1) - blockSize;
+			}
+		}
+	}
+
+	/**
+	 * Emulates {@code sp_getapplock} with an exclusive lock: returns 0 when the lock is granted, or -1 when it is not
+	 * granted within the timeout. Locks are not reentrant.
+	 */
+	public static int spGetAppLock(String resource, int timeoutMillis) throws InterruptedException {
+		Semaphore lock = appLocks.computeIfAbsent(resource, key -> new Semaphore(1));
+		return (lock.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS) ? 0 : -1);
+	}
+
+	/**
+	 * Emulates {@code sp_releaseapplock}.
+	 */
+	public static int spReleaseAppLock(String resource) {
+		appLocks.get(resource).release();
+		return 0;
+	}
+}
@@ -0,0 +1,174 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Builds the incrementer used by each {@link IncrementStrategy} the same way {@link IncrementMeDaoImpl} does, but
+ * against one of the stand-ins for SQL Server: an embedded H2 database in {@code MODE=MSSQLServer} or the
+ * {@link InMemoryJdbcStub}.
+ *
+ * <p>H2 does not understand {@code @@identity}, {@code OUTPUT} clauses or {@code sp_sequence_get_range}, so for H2
+ * the incrementers are subclassed to use {@code scope_identity()}, row-by-row refills and the
+ * {@link SqlServerStubProcedures}, which also stand in for the application locks; the worker leases use {@code current_timestamp}. The in-memory stub understands the production statements as they are.
+ */
+public final class StandInIncrementers {
+
+	/** The number of EXAMPLE_SEQ_n tables of the SHARDED strategy. */
+	public static final int SHARD_COUNT = 4;
+
+	private static final ThreadPoolTaskScheduler LEASE_SCHEDULER = new ThreadPoolTaskScheduler();
+
+	static {
+		LEASE_SCHEDULER.setDaemon(true);
+		LEASE_SCHEDULER.initialize();
+	}
+
+	public enum Backend {
+		H2, IN_MEMORY_STUB
+	}
+
+	private StandInIncrementers() {
+	}
+
+	/**
+	 * Create the schema used by the incrementers in an H2 database and register the stub procedures.
+	 */
+	public static void createH2Schema(DataSource dataSource) throws SQLException {
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("CREATE SEQUENCE EXAMPLE_REAL_SEQUENCE START WITH 1");
+			stmt.execute("CREATE TABLE EXAMPLE_SEQ (ID BIGINT IDENTITY)");
+			for (int shard = 0; shard < SHARD_COUNT; shard++) {
+				stmt.execute("CREATE TABLE " + ShardedSqlServerMaxValueIncrementer.tableName("EXAMPLE_SEQ", shard) + " (ID BIGINT IDENTITY)");
+			}
+			stmt.execute("CREATE TABLE EXAMPLE_HILO_SEQ (NEXT_VAL BIGINT NOT NULL)");
+			stmt.execute("INSERT INTO EXAMPLE_HILO_SEQ VALUES (1)");
+			stmt.execute("CREATE TABLE EXAMPLE_WORKER_LEASE (WORKER_ID INT NOT NULL PRIMARY KEY, OWNER VARCHAR(100) NULL, "
+					+ "EXPIRES_AT DATETIME2 NULL, LAST_TIMESTAMP BIGINT NOT NULL DEFAULT 0)");
+			for (int workerId = 0; workerId < 64; workerId++) {
+				stmt.execute("INSERT INTO EXAMPLE_WORKER_LEASE (WORKER_ID) VALUES (" + workerId + ")");
+			}
+			SqlServerStubProcedures.register(con);
+		}
+	}
+
+	/**
+	 * Create the incrementer for the given strategy.
+	 */
+	public static DataFieldMaxValueIncrementer create(IncrementStrategy strategy, Backend backend, DataSource dataSource, int cacheSize) {
+		boolean h2 = (backend == Backend.H2);
+		switch (strategy) {
+			case DEFAULT_NOT_SHARED :
+			case DEFAULT_SHARED :
+				return h2 ? new org.springframework.jdbc.support.incrementer.SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+					@Override
+					protected String getIdentityStatement() {
+						return "select scope_identity()";
+					}
+				} : new org.springframework.jdbc.support.incrementer.SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id");
+			case NESTED_TRANSACTION_ON_DELETE :
+				return table(h2, cacheSize, h2 ? new NestedTransactionOnDeleteValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", new DataSourceTransactionManager(dataSource)) {
+
+					@Override
+					protected String getIdentityStatement() {
+						return "select scope_identity()";
+					}
+				} : new NestedTransactionOnDeleteValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", new DataSourceTransactionManager(dataSource)));
+			case PASSIVE_REAPER :
+				return table(h2, cacheSize, h2 ? new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+					@Override
+					protected String getIdentityStatement() {
+						return "select scope_identity()";
+					}
+				} : new SqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id"));
+			case APP_LOCK :
+				return table(h2, cacheSize, h2 ? new SqlServerAppLockMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id") {
+
+					@Override
+					protected String getIdentityStatement() {
+						return "select scope_identity()";
+					}
+
+					@Override
+					protected String getAppLockStatement(long timeoutMillis) {
+						return "call sp_getapplock('" + getIncrementerName() + "', " + timeoutMillis + ")";
+					}
+
+					@Override
+					protected String getReleaseAppLockStatement() {
+						return "call sp_releaseapplock('" + getIncrementerName() + "')";
+					}
+				} : new SqlServerAppLockMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id"));
+			case SHARDED :
+				return table(h2, cacheSize, h2 ? new ShardedSqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", SHARD_COUNT) {
+
+					@Override
+					protected String getIdentityStatement() {
+						return "select scope_identity()";
+					}
+				} : new ShardedSqlServerMaxValueIncrementer(dataSource, "EXAMPLE_SEQ", "id", SHARD_COUNT));
+			case SEQUENCE :
+				return h2 ? new SqlServerSequenceMaxValueIncrementer(dataSource, "EXAMPLE_REAL_SEQUENCE") {
+
+					@Override
+					protected String getSequenceRangeQuery(int rangeSize) {
+						return "call sp_sequence_get_range('" + getIncrementerName() + "', " + rangeSize + ")";
+					}
+				} : new SqlServerSequenceMaxValueIncrementer(dataSource, "EXAMPLE_REAL_SEQUENCE");
+			case SEQUENCE_RANGE :
+				return h2 ? new SqlServerSequenceRangeMaxValueIncrementer(dataSource, "EXAMPLE_REAL_SEQUENCE", cacheSize) {
+
+					@Override
+					protected String getSequenceRangeQuery(int rangeSize) {
+						return "call sp_sequence_get_range('" + getIncrementerName() + "', " + rangeSize + ")";
+					}
+				} : new SqlServerSequenceRangeMaxValueIncrementer(dataSource, "EXAMPLE_REAL_SEQUENCE", cacheSize);
+			case HI_LO :
+				SqlServerHiLoMaxValueIncrementer hiLoIncrementer = h2 ? new SqlServerHiLoMaxValueIncrementer(dataSource, "EXAMPLE_HILO_SEQ", "NEXT_VAL") {
+
+					@Override
+					protected String getBlockIncrementStatement(int blockSize) {
+						return "call hilo_next_block('" + getIncrementerName() + "', '" + getColumnName() + "', " + blockSize + ")";
+					}
+				} : new SqlServerHiLoMaxValueIncrementer(dataSource, "EXAMPLE_HILO_SEQ", "NEXT_VAL");
+				hiLoIncrementer.setCacheSize(cacheSize);
+				return hiLoIncrementer;
+			case SNOWFLAKE :
+				SnowflakeMaxValueIncrementer snowflakeIncrementer = new SnowflakeMaxValueIncrementer(dataSource, "EXAMPLE_WORKER_LEASE", LEASE_SCHEDULER);
+				if (h2) {
+					snowflakeIncrementer.setLease(h2Lease(dataSource));
+				}
+				return snowflakeIncrementer;
+			default :
+				throw new IllegalArgumentException("No stand-in for strategy " + strategy);
+		}
+	}
+
+	/**
+	 * Return a lease on the worker lease table of an H2 database, which has no {@code sysutcdatetime()}.
+	 */
+	public static WorkerIdLease h2Lease(DataSource dataSource) {
+		return new WorkerIdLease(dataSource, "EXAMPLE_WORKER_LEASE") {
+
+			@Override
+			protected String getCurrentTimeExpression() {
+				return "current_timestamp";
+			}
+		};
+	}
+
+	private static AbstractSqlServerTableMaxValueIncrementer table(boolean h2, int cacheSize, AbstractSqlServerTableMaxValueIncrementer incrementer) {
+		incrementer.setCacheSize(cacheSize);
+		incrementer.setRefillMode(h2 ? IdentityRefillMode.ROW_BY_ROW : IdentityRefillMode.SET_BASED);
+		return incrementer;
+	}
+}
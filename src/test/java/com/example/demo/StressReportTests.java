@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+public class StressReportTests {
+
+	@Test
+	public void countsDuplicatesAcrossThreads() {
+		StressRecorder first = new StressRecorder(3);
+		first.success(1, 1000);
+		first.success(2, 2000);
+		first.success(3, 3000);
+		StressRecorder second = new StressRecorder(3);
+		second.success(3, 1000);
+		second.success(4, 1000);
+
+		StressReport report = new StressReport("HI_LO", LoadMode.CLOSED_LOOP, 0, Arrays.asList(first, second), TimeUnit.SECONDS.toNanos(1));
+
+		assertThat(report.getSuccesses()).isEqualTo(5);
+		assertThat(report.getDuplicates()).isEqualTo(1);
+		assertThat(report.getThroughputPerSecond()).isEqualTo(5.0);
+	}
+
+	@Test
+	public void classifiesFailuresBySqlServerErrorCode() {
+		StressRecorder recorder = new StressRecorder(1);
+		recorder.failure(new DataAccessResourceFailureException("Could not increment identity",
+				new SQLException("Transaction was deadlocked", "40001", 1205)));
+		recorder.failure(new SQLException("Lock request time out period exceeded", "S0001", 1222));
+		recorder.failure(new IllegalStateException());
+
+		StressReport report = new StressReport("PASSIVE_REAPER", LoadMode.OPEN_LOOP, 500, Arrays.asList(recorder), 1);
+
+		assertThat(report.getFailureCount()).isEqualTo(3);
+		assertThat(report.toJson()).contains("\"DEADLOCK_VICTIM\": 1", "\"LOCK_TIMEOUT\": 1", "\"OTHER\": 1");
+		assertThat(report.toCsvRow()).startsWith("PASSIVE_REAPER,OPEN_LOOP,500.0,1,3,0,");
+	}
+}